@@ -20,10 +20,9 @@
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.awt.geom.Point2D;
-import java.awt.geom.Rectangle2D;
 
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -31,78 +30,74 @@ import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 
-public class AlgorithmSnapshotPanel extends JPanel implements ActionListener, Runnable {
-	final int NUM_INCREMENTS = 100;
-	public enum Phase {NONE, RISING, SHIFTING, LOWERING};
+public class AlgorithmSnapshotPanel extends JPanel implements ActionListener {
+	static final long PHASE_MILLIS = 300;   // wall-clock duration of each animation phase
+	static final long PAUSE_MILLIS = 500;   // delay between steps while playing
 	private DataModel model;
-	private Phase phase = Phase.NONE;
 	private int step;  // 0=initial, 1=first merge, 2=first PQ.sort, ... 2n-1 complete
-	private double aspect;
-	private double t;
+	private ConstructionRenderer renderer;
 	private JCheckBox check;
-	private TreePainter painter;
 	private JLabel status;
 	private boolean run = false;
 	private JButton playNpause;
-	private int index = 1; //this is used to keep track of the index in case of pause during a play button action
+	private double progress;  // fraction of current merge animation completed, in case play is paused
+	
+	private AnimationScheduler scheduler = AnimationScheduler.getInstance();
+	private AnimationListener merge = new AnimationListener() {
+		public void animationFrame(double u) {
+			progress = u;
+			renderer.setSize(getWidth(), getHeight());
+			Rectangle dirty = renderer.getMovingBounds();
+			renderer.setStep(step, u);
+			dirty.add(renderer.getMovingBounds());
+			repaint(dirty);
+		}
+		public void animationFinished() {
+			progress = 0;
+			step++;
+			showStep();
+			if (run)
+				scheduler.animate(pause, PAUSE_MILLIS);
+		}
+	};
+	private AnimationListener pause = new AnimationListener() {
+		public void animationFrame(double u) { }
+		public void animationFinished() {
+			play();
+		}
+	};
 	
 	synchronized void setRun(boolean b) {
 		run = b;
+		if (!b) {
+			// remember progress within merge, so that play can resume it
+			if (scheduler.isAnimating(merge))
+				progress = scheduler.cancel(merge);
+			scheduler.cancel(pause);
+		}
 	}
 	public boolean getRun() {
 		return run;
 	}
 	
-	public void run() {
-		while (run && step != 2*model.size()-3) {
+	/**
+	 * Advances one step while in play mode, resuming a paused merge
+	 * animation if there is one.  Subsequent steps are scheduled as
+	 * each completes, until reaching the end or play is stopped.
+	 */
+	public void play() {
+		if (run && step != renderer.getLastStep()) {
 			if (step % 2 == 1 && check.isSelected()) {
-				//conditionals in place in case the run is interrupted with a pause and needs to find its place
-				if (phase.equals(Phase.RISING) || phase.equals(phase.NONE)) {
-					if (phase.equals(phase.NONE))
-						index = 1;
-					phase = Phase.RISING;
-					for (; index <= NUM_INCREMENTS && run; index++) {
-						t = ((double) index) / NUM_INCREMENTS;
-						paintImmediately(getVisibleRect());
-					}
-				}
-				//can't be else if in case it reaches here without a pause interrupting
-				if (run && (phase.equals(Phase.RISING) || phase.equals(Phase.SHIFTING))) {
-					if (phase.equals(Phase.RISING))
-						index = 1;
-					phase = Phase.SHIFTING;
-					for (; index <= NUM_INCREMENTS && run; index++) {
-						t = ((double) index) / NUM_INCREMENTS;
-						paintImmediately(getVisibleRect());
-					}
-				}
-				//if statement doesn't need to surround the whole thing because the other if statements already tested the condition
-				if (run && phase.equals(Phase.SHIFTING)) {
-					index = 1;
-					phase = Phase.LOWERING;
-				}
-				for (; index <= NUM_INCREMENTS && run; index++) {
-					t = ((double) index) / NUM_INCREMENTS;
-					paintImmediately(getVisibleRect());
-				}
-				
-				if (run)
-					phase = Phase.NONE;
-			}
-			if (run) {
+				scheduler.animate(merge, 3 * PHASE_MILLIS, progress);
+			} else {
 				step++;
-				setStatus();
-				repaint();
-			}
-			try {
-				Thread.sleep(500);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				showStep();
+				scheduler.animate(pause, PAUSE_MILLIS);
 			}
+		} else {
+			playNpause.setIcon(new ImageIcon("play16.gif"));
+			run = false;
 		}
-		playNpause.setIcon(new ImageIcon("play16.gif"));
-		run = false;
 	}
 	
 	/**
@@ -118,131 +113,69 @@ public class AlgorithmSnapshotPanel extends JPanel implements ActionListener, Ru
 	public AlgorithmSnapshotPanel(JCheckBox c, JLabel status, JButton button) {
 		check = c;
 		this.status = status;
-		phase = Phase.NONE;
 		playNpause = button;
 	}
 	
 	public void paintComponent(Graphics g) {
 		if (model != null) {
-			Graphics2D g2 = (Graphics2D) g;
-			g2.clearRect(0,  0, getWidth(), getHeight());
-			Rectangle2D box = painter.getBounds(model.getRoot());
-			double factor = Math.min(getWidth() / box.getWidth(), getHeight() / box.getHeight());
-
-			DataModel.TreeIterator[] subs = model.getPQTrace(step/2);
-			double subx[] = new double[subs.length];
-			
-			int endJ = subs.length;
-			int splitJ = subs.length;
-			double boxW=0, boxH=0;
-			DataModel.TreeIterator combined = null;
-			if (step % 2 == 1) {
-				combined = subs[subs.length-1].getParent();
-				boxW = painter.getBounds(combined).getWidth();
-				boxH = Math.max(painter.getBounds(subs[subs.length-1]).getHeight(),
-							    painter.getBounds(subs[subs.length-2]).getHeight());
-				
-				DataModel.TreeIterator[] future = model.getPQTrace(1+step/2);
-				for (splitJ = future.length - 1; !future[splitJ].equals(combined); splitJ--);
-			}
-			
-			double totalWidth = 0;
-			double splitWidth = 0;
-			double maxHeight = 0;
-			int k=0;
-			for (DataModel.TreeIterator s : subs) {
-				Rectangle2D subbox = painter.getBounds(s);
-				totalWidth +=  subbox.getWidth();
-				subx[k] = totalWidth - subbox.getMaxX();
-				maxHeight = Math.max(maxHeight, subbox.getHeight());
-				k++;
-				if (k == splitJ)
-					splitWidth = totalWidth;
-			}
-			splitWidth = totalWidth - splitWidth;
-
-			double padX = (getWidth() - factor*totalWidth)/2;
-			double adjustX = 0;
-			if (step % 2 == 1) {
-				endJ -= 2;
-				double combineX = (subx[subs.length-2] + subx[subs.length-1]) / 2;
-				double combineY = maxHeight - 0.5 + aspect;
-				double adjustY = 0;
-//				if (splitJ != subs.length-2) {
-					switch (phase) {
-					case RISING:
-						adjustY = - t * boxH;
-						break;
-					case SHIFTING:
-						adjustX = - t * (splitWidth - boxW);
-						adjustY = - boxH;
-						break;
-					case LOWERING:
-						adjustX = - (splitWidth - boxW);
-						adjustY = (t-1) * boxH;
-						if (maxHeight != boxH)
-							adjustY += t * aspect;
-						break;
-					}
-//				}
-				Point2D p = new Point2D.Double(factor*adjustX + padX + factor*combineX,
-											   factor*adjustY + getHeight() - factor*combineY);
-				
-				if (step != 2 * model.size() - 3 && phase == Phase.NONE) {
-					painter.drawSelection(g2, combined, subs[subs.length-1], factor, p);
-					painter.drawSelection(g2, combined, subs[subs.length-2], factor, p);
-				}
-				painter.draw(g2, combined, factor, p);
-			}
-					
-			for (int j=0; j < endJ; j++) {
-				double x = padX + factor*subx[j];
-				double y = getHeight() - factor*(maxHeight-0.5);
-				if (j >= splitJ) {
-					if (phase == Phase.SHIFTING)
-						x += t * factor * boxW;
-					else if (phase == Phase.LOWERING)
-						x += factor * boxW;
-				}
-				if (phase == Phase.LOWERING && maxHeight == boxH)
-					y -= t * factor * aspect;
-				painter.draw(g2, subs[j], factor, new Point2D.Double(x, y));
-			}
+			renderer.setSize(getWidth(), getHeight());
+			renderer.paint((Graphics2D) g);
 		}
 	}
 	
 	public void setModel(DataModel m) {
+		scheduler.cancel(merge);
+		progress = 0;
 		model = m;
 		step = 0;
-		phase= Phase.NONE;
-		aspect = (1.0 * m.size() * getHeight()) / (m.getRoot().getDepth() * getWidth());
-		painter = new TreePainter(m.getRoot(), aspect);
-		setStatus();
+		renderer = new ConstructionRenderer(LayoutService.getConstructionLayout(m),
+				ConstructionRenderer.getAspect(m, getWidth(), getHeight()));
+		showStep();
 	}
 
 	public void actionPerformed(ActionEvent e) {
 		String cmd = e.getActionCommand();
 
+		if (scheduler.isAnimating(merge)) {
+			// complete (or abandon) merge in progress before any other action
+			if (cmd.equals(">")) {
+				scheduler.finish(merge);
+				return;
+			}
+			scheduler.cancel(merge);
+		}
+		progress = 0;
+		
 		if (cmd.equals("<"))
 			step = Math.max(0, step-1);
 		else if (cmd.equals(">")) {
-			if (step < 2 * model.size() - 3) {
-				if (step % 2 == 1 && check.isSelected())
-					animate();
+			if (step < renderer.getLastStep()) {
+				if (step % 2 == 1 && check.isSelected()) {
+					scheduler.animate(merge, 3 * PHASE_MILLIS);
+					return;  // step advances once animation completes
+				}
 				step += 1;
 			}
 		} else if (cmd.equals("<<"))
 			step = 0;
 		else if (cmd.equals(">>"))
-			step = 2*model.size() - 3;
+			step = renderer.getLastStep();
+
+		showStep();
 
+	}
+	
+	/**
+	 * Shows the current step (after it has been changed).
+	 */
+	private void showStep() {
+		renderer.setStep(step);
 		setStatus();
 		repaint();
-
 	}
 	
 	private void setStatus() {
-		if (step == 2*model.size() - 3) {
+		if (step == renderer.getLastStep()) {
 			status.setText("Process is complete");
 //			System.out.println("complete");
 		}
@@ -255,29 +188,6 @@ public class AlgorithmSnapshotPanel extends JPanel implements ActionListener, Ru
 //			System.out.println("combine");
 		}
 	}
-	
-	// Note that step has not yet been changed
-	private void animate() {
-		phase = Phase.RISING;
-		for (int k=1; k <= NUM_INCREMENTS; k++) {
-			t = ((double) k) / NUM_INCREMENTS;
-			paintImmediately(getVisibleRect());
-		}
-		
-		phase = Phase.SHIFTING;
-		for (int k=1; k <= NUM_INCREMENTS; k++) {
-			t = ((double) k) / NUM_INCREMENTS;
-			paintImmediately(getVisibleRect());
-		}
-		
-		phase = Phase.LOWERING;
-		for (int k=1; k <= NUM_INCREMENTS; k++) {
-			t = ((double) k) / NUM_INCREMENTS;
-			paintImmediately(getVisibleRect());
-		}
-		
-		phase = Phase.NONE;
-	}
 
 
 	
@@ -89,7 +89,7 @@ public class AlgorithmView extends JComponent implements ModelView {
 			public void actionPerformed(ActionEvent e) {
 				if (!snapshot.getRun()) {
 					snapshot.setRun(true);
-					new Thread(snapshot).start();
+					snapshot.play();
 					playNpause.setIcon(pause);
 					if (HuffmanDemo.DEBUG > 0) System.out.println("play");
 				}
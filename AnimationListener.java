@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.util.EventListener;
+
+/**
+ * Receives frames from the AnimationScheduler.
+ */
+public interface AnimationListener extends EventListener {
+
+	/**
+	 * Called (on the event dispatch thread) for each frame of an animation.
+	 * 
+	 * @param t fraction of the animation that has elapsed, from 0 to 1
+	 */
+	public void animationFrame(double t);
+	
+	/**
+	 * Called once the animation has completed, immediately after the final
+	 * frame (with t=1) has been delivered.  It is not called for an
+	 * animation that is cancelled.
+	 */
+	public void animationFinished();
+}
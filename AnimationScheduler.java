@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+
+import javax.swing.Timer;
+
+/**
+ * Drives all animations of the demo from a single shared Swing timer.
+ * 
+ * Animations are parameterized by elapsed wall-clock time rather than by
+ * frame count, so each takes a fixed duration no matter how long painting
+ * takes.  When painting is slow, timer events are coalesced and the
+ * intermediate frames are simply skipped.  Listeners should request a
+ * repaint (rather than paint immediately) for each frame, so the event
+ * dispatch thread stays responsive throughout.
+ * 
+ * All methods must be called on the event dispatch thread.
+ */
+public class AnimationScheduler implements ActionListener {
+	public static final int TARGET_FPS = 60;
+	
+	private static AnimationScheduler instance;
+	
+	private Timer timer;
+	private ArrayList<Entry> active = new ArrayList<Entry>();
+	
+	/**
+	 * State of one running animation.
+	 */
+	private static class Entry {
+		AnimationListener listener;
+		long start;       // System.nanoTime() when started
+		long duration;    // nanoseconds for an animation from 0 to 1
+		double from;      // fraction at which animation started
+		double fraction;  // most recently delivered fraction
+	}
+	
+	/**
+	 * Returns the shared scheduler.
+	 */
+	public static AnimationScheduler getInstance() {
+		if (instance == null)
+			instance = new AnimationScheduler();
+		return instance;
+	}
+	
+	private AnimationScheduler() {
+		timer = new Timer(1000 / TARGET_FPS, this);
+		timer.setCoalesce(true);
+	}
+	
+	/**
+	 * Starts (or restarts) an animation for the given listener.
+	 * 
+	 * @param listener recipient of the frames
+	 * @param millis duration of the full animation, in milliseconds
+	 */
+	public void animate(AnimationListener listener, long millis) {
+		animate(listener, millis, 0.0);
+	}
+	
+	/**
+	 * Starts (or restarts) an animation for the given listener, beginning
+	 * part way through.  This allows a paused animation to be resumed.
+	 * 
+	 * @param listener recipient of the frames
+	 * @param millis duration of the full animation (from 0 to 1), in milliseconds
+	 * @param from fraction of the animation already completed
+	 */
+	public void animate(AnimationListener listener, long millis, double from) {
+		cancel(listener);
+		Entry e = new Entry();
+		e.listener = listener;
+		e.start = System.nanoTime();
+		e.duration = Math.max(1, millis * 1000000L);
+		e.from = e.fraction = from;
+		active.add(e);
+		if (!timer.isRunning())
+			timer.start();
+	}
+	
+	/**
+	 * Returns true if the listener currently has an animation in progress.
+	 */
+	public boolean isAnimating(AnimationListener listener) {
+		return find(listener) >= 0;
+	}
+	
+	/**
+	 * Returns the most recently delivered fraction for the listener's
+	 * animation (or 0, if not animating).
+	 */
+	public double getFraction(AnimationListener listener) {
+		int k = find(listener);
+		return (k < 0 ? 0.0 : active.get(k).fraction);
+	}
+	
+	/**
+	 * Stops an animation without completing it.  No further frames are
+	 * delivered and animationFinished is not called.
+	 * @return fraction of the animation that had been delivered (or 0, if not animating)
+	 */
+	public double cancel(AnimationListener listener) {
+		int k = find(listener);
+		if (k < 0)
+			return 0.0;
+		double fraction = active.remove(k).fraction;
+		if (active.isEmpty())
+			timer.stop();
+		return fraction;
+	}
+	
+	/**
+	 * Completes an animation immediately, delivering its final frame.
+	 */
+	public void finish(AnimationListener listener) {
+		if (isAnimating(listener)) {
+			cancel(listener);
+			listener.animationFrame(1.0);
+			listener.animationFinished();
+		}
+	}
+	
+	private int find(AnimationListener listener) {
+		for (int k=0; k < active.size(); k++)
+			if (active.get(k).listener == listener)
+				return k;
+		return -1;
+	}
+	
+	/**
+	 * Timer callback: delivers one frame to each running animation.
+	 */
+	public void actionPerformed(ActionEvent event) {
+		long now = System.nanoTime();
+		// listeners may start or cancel animations, so work from a snapshot
+		Entry[] current = active.toArray(new Entry[active.size()]);
+		for (Entry e : current) {
+			if (!active.contains(e))
+				continue;  // cancelled by an earlier listener
+			double fraction = e.from + (double) (now - e.start) / e.duration;
+			if (fraction >= 1.0) {
+				active.remove(e);
+				e.listener.animationFrame(1.0);
+				e.listener.animationFinished();
+			} else {
+				e.fraction = fraction;
+				e.listener.animationFrame(fraction);
+			}
+		}
+		if (active.isEmpty())
+			timer.stop();
+	}
+}
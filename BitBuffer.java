@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+/**
+ * A growable sequence of bits, packed 64 to a long.
+ * 
+ * As a CharSequence, the bits read as the characters '0' and '1', so that
+ * an encoded message can be kept and edited in an eighth of the memory
+ * of the equivalent String, and read a word at a time by views.
+ * 
+ * The bits are kept in a gap buffer: replace moves the gap to the edit and
+ * fills it, so an edit costs time proportional to its size and to the
+ * distance from the previous edit, rather than to the length of the bits.
+ */
+public class BitBuffer implements CharSequence {
+	private long[] words = new long[1];
+	private int length;
+	private int gapStart;    // bits from gapStart on are stored gapLength bits later
+	private int gapLength;   // stored bits at and beyond length+gapLength are all zero
+	
+	/**
+	 * Returns the number of bits.
+	 */
+	public int length() {
+		return length;
+	}
+	
+	/**
+	 * Returns bit j.
+	 */
+	public boolean get(int j) {
+		if (j < 0 || j >= length)
+			throw new IndexOutOfBoundsException("bit " + j + " of " + length);
+		if (j >= gapStart)
+			j += gapLength;
+		return (words[j >>> 6] & (1L << j)) != 0;
+	}
+	
+	/**
+	 * Returns bit j as the character '0' or '1'.
+	 */
+	public char charAt(int j) {
+		return get(j) ? '1' : '0';
+	}
+	
+	/**
+	 * Returns bits start through end-1 as a String of '0' and '1' characters.
+	 */
+	public String substring(int start, int end) {
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("bits " + start + " to " + end + " of " + length);
+		char[] chars = new char[end - start];
+		for (int j=start; j < end; j++) {
+			int k = (j < gapStart ? j : j + gapLength);
+			chars[j - start] = ((words[k >>> 6] & (1L << k)) != 0 ? '1' : '0');
+		}
+		return new String(chars);
+	}
+	
+	public CharSequence subSequence(int start, int end) {
+		return substring(start, end);
+	}
+	
+	@Override
+	public String toString() {
+		return substring(0, length);
+	}
+	
+	/**
+	 * Truncates (or extends with zeros) to the given number of bits.
+	 */
+	public void setLength(int n) {
+		if (n < gapStart) {
+			// everything after the gap is dropped, and with it the gap
+			clear(n, length + gapLength);
+			gapLength = 0;
+		} else if (n < length) {
+			clear(n + gapLength, length + gapLength);
+		} else
+			ensureCapacity(n + gapLength);
+		length = n;
+	}
+	
+	/**
+	 * Appends bits given as '0' and '1' characters.
+	 * @throws IllegalArgumentException if bits has any other character
+	 */
+	public BitBuffer append(CharSequence bits) {
+		int end = length + gapLength;
+		ensureCapacity(end + bits.length());
+		for (int j=0; j < bits.length(); j++) {
+			char ch = bits.charAt(j);
+			if (ch == '1')
+				words[end >>> 6] |= 1L << end;
+			else if (ch != '0')
+				throw new IllegalArgumentException("not a bit: '" + ch + "'");
+			length++;
+			end++;
+		}
+		return this;
+	}
+	
+	/**
+	 * Replaces bits start through end-1 with the given bits, shifting those
+	 * that followed.
+	 * @throws IllegalArgumentException if bits has a character other than '0' or '1'
+	 */
+	public BitBuffer replace(int start, int end, CharSequence bits) {
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("bits " + start + " to " + end + " of " + length);
+		for (int j=0; j < bits.length(); j++)
+			if (bits.charAt(j) != '0' && bits.charAt(j) != '1')
+				throw new IllegalArgumentException("not a bit: '" + bits.charAt(j) + "'");
+		moveGap(end);
+		gapLength += end - start;   // removed bits join the gap
+		gapStart = start;
+		length -= end - start;
+		if (gapLength < bits.length())
+			growGap(bits.length() - gapLength);
+		for (int j=0; j < bits.length(); j += 64) {
+			int n = Math.min(64, bits.length() - j);
+			long word = 0;
+			for (int k=0; k < n; k++)
+				if (bits.charAt(j + k) == '1')
+					word |= 1L << k;
+			store(gapStart + j, word, n);
+		}
+		gapStart += bits.length();
+		gapLength -= bits.length();
+		length += bits.length();
+		return this;
+	}
+	
+	/**
+	 * Returns the (up to) 64 bits starting with bit j, with bit j lowest.
+	 */
+	public long word(int j) {
+		if (j >= gapStart)
+			return load(j + gapLength);
+		long result = load(j);
+		int before = gapStart - j;    // bits of the result preceding the gap
+		if (gapLength != 0 && before < 64)
+			result = (result & ((1L << before) - 1)) | load(gapStart + gapLength) << before;
+		return result;
+	}
+	
+	/**
+	 * Appends the low n bits of given word (0 <= n <= 64), lowest bit first,
+	 * so that word(j) would read them back.
+	 */
+	public void appendWord(long bits, int n) {
+		if (n == 0)
+			return;
+		if (n < 64)
+			bits &= (1L << n) - 1;
+		int end = length + gapLength;
+		ensureCapacity(end + n);
+		int w = end >>> 6, shift = end & 63;
+		words[w] |= bits << shift;
+		if (shift != 0 && shift + n > 64)
+			words[w + 1] |= bits >>> (64 - shift);
+		length += n;
+	}
+	
+	/*
+	 * Returns the (up to) 64 stored bits starting at stored bit k.
+	 */
+	private long load(int k) {
+		int w = k >>> 6, shift = k & 63;
+		if (w >= words.length)
+			return 0L;   // nothing is stored this far
+		long result = words[w] >>> shift;
+		if (shift != 0 && w + 1 < words.length)
+			result |= words[w + 1] << (64 - shift);
+		return result;
+	}
+	
+	/*
+	 * Overwrites the n stored bits starting at stored bit k with the low n
+	 * bits of given word.
+	 */
+	private void store(int k, long bits, int n) {
+		long mask = (n == 64 ? -1L : (1L << n) - 1);
+		bits &= mask;
+		int w = k >>> 6, shift = k & 63;
+		words[w] = (words[w] & ~(mask << shift)) | bits << shift;
+		if (shift != 0 && shift + n > 64)
+			words[w + 1] = (words[w + 1] & ~(mask >>> (64 - shift))) | bits >>> (64 - shift);
+	}
+	
+	/*
+	 * Zeroes stored bits from through to-1.
+	 */
+	private void clear(int from, int to) {
+		for (int k=from; k < to; k += 64)
+			store(k, 0L, Math.min(64, to - k));
+	}
+	
+	/*
+	 * Moves the gap to just before bit j, a word at a time.
+	 */
+	private void moveGap(int j) {
+		if (gapLength == 0) {
+			gapStart = j;
+		} else if (j < gapStart) {
+			// bits j..gapStart-1 move up past the gap; copy from the top down
+			for (int k=gapStart; k > j; ) {
+				int n = Math.min(64, k - j);
+				k -= n;
+				store(k + gapLength, load(k), n);
+			}
+			gapStart = j;
+		} else {
+			// bits gapStart..j-1 move down past the gap; copy from the bottom up
+			for (int k=gapStart; k < j; k += 64)
+				store(k, load(k + gapLength), Math.min(64, j - k));
+			gapStart = j;
+		}
+	}
+	
+	/*
+	 * Widens the gap by at least n bits (and by a whole number of words, so
+	 * that the bits after it keep their place within words).
+	 */
+	private void growGap(int n) {
+		int extra = Math.max(n, 32 * words.length);
+		extra = (extra + 63) >>> 6;   // in words
+		int end = length + gapLength;
+		int from = (gapStart + gapLength) >>> 6;   // first word holding bits after the gap
+		int used = (end + 63) >>> 6;
+		long[] grown = words;
+		if (used + extra > words.length) {
+			grown = new long[Math.max(used + extra, 2*words.length)];
+			System.arraycopy(words, 0, grown, 0, Math.min(used, from + 1));
+		}
+		System.arraycopy(words, from, grown, from + extra, used - from);
+		words = grown;
+		gapLength += 64 * extra;
+	}
+	
+	private void ensureCapacity(int n) {
+		int needed = (n + 63) >>> 6;
+		if (needed > words.length)
+			words = Arrays.copyOf(words, Math.max(needed, 2*words.length));
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import javax.swing.JPanel;
+import javax.swing.JScrollBar;
+
+/**
+ * A horizontally scrolling view of a long sequence of bits, for messages
+ * too long to be shown by a text field with one character per bit.
+ * 
+ * Only the bits within the visible range are painted, read a word at a
+ * time from a BitBuffer, along with markers at codeword boundaries, the
+ * coloring of codewords reached so far, and a caret at the current bit.
+ * Painting therefore costs the same however long the message is.  The
+ * scroll bar counts bits rather than pixels, so that its range does not
+ * overflow however long the message is.
+ */
+@SuppressWarnings("serial")
+public class BitStripView extends JPanel {
+	private static final int PAD = 3;   // pixels above and below the bits
+	private static final Color BOUNDARY = Color.GRAY;
+	
+	private Color[] colors;
+	private BitBuffer bits = new BitBuffer();
+	private CodewordEnds ends = new CodewordEnds();
+	private int reached;                // number of codewords reached
+	private int position;               // number of bits before the caret
+	private Strip strip;
+	private JScrollBar scroller;
+	
+	class Strip extends JPanel {
+		@Override
+		public Dimension getPreferredSize() {
+			FontMetrics fm = getFontMetrics(BitStripView.this.getFont());
+			return new Dimension(100, fm.getHeight() + 2*PAD);
+		}
+		
+		@Override
+		public void paintComponent(Graphics g) {
+			super.paintComponent(g);
+			g.setFont(BitStripView.this.getFont());
+			FontMetrics fm = g.getFontMetrics();
+			int cell = cellWidth();
+			int first = scroller.getValue();
+			int last = Math.min(bits.length(), first + getWidth() / cell + 1);
+			int baseline = PAD + fm.getAscent();
+			int count = ends.size();
+			int k = ends.countBefore(first);   // codeword containing bit first
+			char[] glyph = new char[1];
+			long word = 0;
+			for (int j=first; j < last; j++) {
+				if ((j - first) % 64 == 0)
+					word = bits.word(j);
+				while (k < count && ends.get(k) < j)
+					k++;
+				int x = (j - first) * cell;
+				if (k < reached || (k == reached && j < position)) {
+					g.setColor(colors[k % colors.length]);
+					g.fillRect(x, 0, cell, getHeight());
+				}
+				glyph[0] = ((word >>> ((j - first) % 64) & 1) != 0 ? '1' : '0');
+				g.setColor(getForeground());
+				g.drawChars(glyph, 0, 1, x + (cell - fm.charWidth(glyph[0])) / 2, baseline);
+				if (k < count && ends.get(k) == j) {
+					g.setColor(BOUNDARY);
+					g.drawLine(x + cell - 1, 0, x + cell - 1, getHeight());
+				}
+			}
+			if (position >= first && position <= last) {
+				int caret = (position - first) * cell;
+				g.setColor(getForeground());
+				g.drawLine(caret, 0, caret, getHeight());
+				g.drawLine(caret + 1, 0, caret + 1, getHeight());
+			}
+		}
+	}
+	
+	/**
+	 * Creates an empty view, coloring codewords alternately with given colors.
+	 */
+	public BitStripView(Color[] colors) {
+		this.colors = colors;
+		setLayout(new BorderLayout());
+		strip = new Strip();
+		strip.setBackground(Color.WHITE);
+		add(strip, BorderLayout.CENTER);
+		scroller = new JScrollBar(JScrollBar.HORIZONTAL);
+		scroller.addAdjustmentListener(new AdjustmentListener() {
+			public void adjustmentValueChanged(AdjustmentEvent e) {
+				strip.repaint();
+			}
+		});
+		add(scroller, BorderLayout.SOUTH);
+		strip.addComponentListener(new ComponentAdapter() {
+			public void componentResized(ComponentEvent e) {
+				setScroll(scroller.getValue());
+			}
+		});
+	}
+	
+	/**
+	 * Sets the bits shown, and the codeword boundaries within them.
+	 * 
+	 * Neither bits nor ends is copied, so this should be called again
+	 * after either changes.
+	 */
+	public void setBits(BitBuffer bits, CodewordEnds ends) {
+		this.bits = bits;
+		this.ends = ends;
+		setScroll(scroller.getValue());
+		strip.repaint();
+	}
+	
+	/**
+	 * Sets the number of codewords reached and the position of the caret,
+	 * scrolling if need be to keep the caret in view.
+	 * 
+	 * Reached codewords are colored, as are the bits before the caret
+	 * of the following codeword.
+	 */
+	public void setPosition(int reached, int position) {
+		this.reached = reached;
+		this.position = position;
+		int shown = visibleBits();
+		if (position < scroller.getValue() || position >= scroller.getValue() + shown)
+			setScroll(position - shown/2);
+		strip.repaint();
+	}
+	
+	private int cellWidth() {
+		return Math.max(1, getFontMetrics(getFont()).charWidth('0') + 2);
+	}
+	
+	/*
+	 * Returns the number of bits that fit across the strip.
+	 */
+	private int visibleBits() {
+		return Math.max(1, strip.getWidth() / cellWidth());
+	}
+	
+	/*
+	 * Scrolls so that the given bit is the first shown (as near as possible).
+	 */
+	private void setScroll(int first) {
+		int extent = visibleBits();
+		int max = Math.max(extent, bits.length() + 1);   // room for the caret after the last bit
+		scroller.setValues(Math.max(0, Math.min(first, max - extent)), extent, 0, max);
+		scroller.setUnitIncrement(1);
+		scroller.setBlockIncrement(Math.max(1, extent - 1));
+	}
+}
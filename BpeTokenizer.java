@@ -0,0 +1,237 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A tokenizer whose symbols are subwords learned from a sample, in the
+ * manner of byte pair encoding.
+ * 
+ * Training starts with the characters of the sample, and repeatedly
+ * merges the most frequent adjacent pair of symbols into a new symbol,
+ * until the vocabulary reaches the requested size (or no pair occurs
+ * twice).  Text is then split by a GreedySegmenter over that vocabulary.
+ * 
+ * Pairs wait in a priority queue by count, and each pair keeps the
+ * positions at which it occurs, so a merge costs time proportional to the
+ * occurrences it replaces rather than to the size of the sample.
+ */
+public class BpeTokenizer implements Tokenizer {
+	private ArrayList<String> vocabulary = new ArrayList<String>();
+	private GreedySegmenter segmenter;
+	
+	/*
+	 * A pair of symbols, with its number of occurrences when queued.
+	 * Counts change as merges proceed, so a candidate whose count is no
+	 * longer current is discarded (or requeued) when it reaches the front.
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+		final long pair;
+		final int count;
+		
+		Candidate(long pair, int count) {
+			this.pair = pair;
+			this.count = count;
+		}
+		
+		public int compareTo(Candidate other) {
+			if (count != other.count)
+				return (count > other.count ? -1 : +1);   // most frequent first
+			return (pair < other.pair ? -1 : (pair > other.pair ? +1 : 0));
+		}
+	}
+	
+	// training state, discarded once the vocabulary is learned
+	private HashMap<Long, Integer> pairCount = new HashMap<Long, Integer>();
+	private HashMap<Long, ArrayList<Integer>> pairPositions = new HashMap<Long, ArrayList<Integer>>();   // may include stale positions
+	private PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+	
+	/**
+	 * Learns a vocabulary from the sample.
+	 * 
+	 * @param sample text on which to train
+	 * @param alphabetSize desired number of symbols (including the sample's characters)
+	 * @throws IllegalArgumentException if alphabetSize is not larger than the
+	 *   number of distinct characters of the sample
+	 */
+	public BpeTokenizer(String sample, int alphabetSize) {
+		// the sample as a linked list of symbols, so that merges are cheap
+		int n = sample.length();
+		int[] symbol = new int[n];
+		int[] next = new int[n];
+		int[] prev = new int[n];
+		HashMap<String, Integer> idOf = new HashMap<String, Integer>();
+		for (int j=0; j < n; j++) {
+			String ch = String.valueOf(sample.charAt(j));
+			Integer id = idOf.get(ch);
+			if (id == null) {
+				id = vocabulary.size();
+				idOf.put(ch, id);
+				vocabulary.add(ch);
+			}
+			symbol[j] = id;
+			next[j] = (j + 1 < n ? j + 1 : -1);
+			prev[j] = j - 1;
+		}
+		if (alphabetSize <= vocabulary.size())
+			throw new IllegalArgumentException("alphabet size " + alphabetSize
+					+ " must exceed the " + vocabulary.size() + " characters of the sample");
+		
+		for (int j=0; j + 1 < n; j++)
+			count(symbol[j], symbol[j+1], j, +1);
+		for (Long pair : pairCount.keySet())
+			enqueue(pair);
+		
+		while (vocabulary.size() < alphabetSize && !queue.isEmpty()) {
+			Candidate best = queue.poll();
+			Integer current = pairCount.get(best.pair);
+			if (current == null || current != best.count) {
+				if (current != null && current < best.count)
+					enqueue(best.pair);   // fell since queued
+				continue;
+			}
+			int a = (int) (best.pair >>> 32), b = (int) best.pair;
+			String text = vocabulary.get(a) + vocabulary.get(b);
+			Integer merged = idOf.get(text);
+			if (merged == null) {
+				merged = vocabulary.size();
+				idOf.put(text, merged);
+				vocabulary.add(text);
+			}   // otherwise other merges already made this string; reuse its symbol
+			
+			// replace each occurrence of a,b (left to right), adjusting counts of neighboring pairs
+			ArrayList<Integer> positions = pairPositions.remove(best.pair);
+			Collections.sort(positions);
+			HashSet<Long> created = new HashSet<Long>();   // pairs with the merged symbol
+			for (int j : positions) {
+				int k = next[j];
+				if (symbol[j] != a || k == -1 || symbol[k] != b)
+					continue;   // stale, or overlapped by the previous occurrence
+				int before = prev[j], after = next[k];
+				if (before != -1) {
+					count(symbol[before], a, before, -1);
+					created.add(count(symbol[before], merged, before, +1));
+				}
+				if (after != -1) {
+					count(b, symbol[after], k, -1);
+					created.add(count(merged, symbol[after], j, +1));
+				}
+				count(a, b, j, -1);
+				symbol[j] = merged;
+				symbol[k] = -1;   // removed from the list
+				next[j] = after;
+				if (after != -1)
+					prev[after] = j;
+			}
+			for (Long pair : created)
+				enqueue(pair);
+		}
+		pairCount = null;
+		pairPositions = null;
+		queue = null;
+		segmenter = new GreedySegmenter(vocabulary);
+	}
+	
+	/*
+	 * Adjusts the number of occurrences of the pair a,b by delta, for an
+	 * occurrence starting at the given position.
+	 * @return the pair's key
+	 */
+	private Long count(int a, int b, int position, int delta) {
+		Long key = ((long) a << 32) | b;
+		Integer c = pairCount.get(key);
+		int updated = (c == null ? 0 : c) + delta;
+		if (updated == 0) {
+			pairCount.remove(key);
+			pairPositions.remove(key);
+		} else {
+			pairCount.put(key, updated);
+			if (delta > 0) {
+				ArrayList<Integer> positions = pairPositions.get(key);
+				if (positions == null) {
+					positions = new ArrayList<Integer>();
+					pairPositions.put(key, positions);
+				}
+				positions.add(position);
+			}
+		}
+		return key;
+	}
+	
+	/*
+	 * Queues the pair with its current count, if it occurs more than once.
+	 */
+	private void enqueue(Long pair) {
+		Integer c = pairCount.get(pair);
+		if (c != null && c > 1)
+			queue.add(new Candidate(pair, c));
+	}
+	
+	/**
+	 * Returns the learned symbols, in the order learned (single characters first).
+	 */
+	public List<String> getVocabulary() {
+		return Collections.unmodifiableList(vocabulary);
+	}
+
+	public List<String> tokenize(String text) {
+		return segmenter.tokenize(text);
+	}
+	
+	/**
+	 * Compares the tokenizers on a text file (given as argument) or a short
+	 * built-in sample, checking that each model decodes its encodings of the
+	 * sample, and of text with characters not in the sample, back to the text.
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		String text = "This is a test.\nThis is only a test.\nTesting, one, two three.\n";
+		if (args.length > 0)
+			text = new String(Files.readAllBytes(Paths.get(args[0])), Charset.forName("UTF-8"));
+		String unseen = "Zany \u00e9tude, testing 1 2 3!";
+		
+		HashSet<Character> characters = new HashSet<Character>();
+		for (int j=0; j < text.length(); j++)
+			characters.add(text.charAt(j));
+		String[] names = { "characters", "bigrams", "words", "BPE subwords" };
+		Tokenizer[] tokenizers = { new NGramTokenizer(1), new NGramTokenizer(2), new WordTokenizer(),
+				new BpeTokenizer(text, characters.size() + 64) };
+		boolean ok = true;
+		for (int k=0; k < tokenizers.length; k++) {
+			DataModel model = DataModel.createFromRaw(text, tokenizers[k], true);
+			String bits = model.encodeText(text);
+			boolean sample = text.equals(model.decodeText(bits));
+			boolean other = unseen.equals(model.decodeText(model.encodeText(unseen)));
+			System.out.println(names[k] + ": " + model.size() + " symbols, "
+					+ (double) bits.length() / text.length() + " bits per char, round trip "
+					+ sample + ", unseen text " + other);
+			ok &= sample && other;
+		}
+		System.out.println(ok ? "all round trips passed" : "ROUND TRIP FAILED");
+	}
+}
@@ -19,10 +19,14 @@
 
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.Insets;
+import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Arrays;
+import javax.swing.BoundedRangeModel;
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
@@ -30,10 +34,13 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Document;
 import javax.swing.text.Highlighter;
 import javax.swing.text.Highlighter.HighlightPainter;
 
@@ -41,6 +48,7 @@ public class CodePanel extends JPanel implements ModelView {
 	
 	private static Highlighter.HighlightPainter errorPainter = new DefaultHighlighter.DefaultHighlightPainter(Color.RED);
 	private static Color[] colors = {new Color(30,144,255), new Color(255, 140, 0)};
+	private static final int FIELD_LIMIT = 1 << 14;   // longer encodings are shown by the bit strip alone
 	private static Highlighter.HighlightPainter[] p;
 	static {
 		p = new DefaultHighlighter.DefaultHighlightPainter[colors.length];
@@ -49,10 +57,17 @@ public class CodePanel extends JPanel implements ModelView {
 	}
 	
 	private HuffmanDemo master;
+	private DataModel model;
+	private boolean singleCharSymbols;   // plaintext index of each decoded symbol is its count
 	private Highlighter h1 = null;
 	private Highlighter h2 = null;
+	private HighlightStrip plainStrip;   // highlights characters of the plaintext field
+	private HighlightStrip codeStrip;    // highlights codewords of the encoded field
+	private ArrayList<Object> partialTags = new ArrayList<Object>();   // highlights of an incomplete codeword
+	private boolean drawing;             // true while draw changes the text fields
 	private JTextField plainTextField;     // TODO: make this a JTextArea with height 1 and scroll (to accomodate newlines)
 	private JTextField encodedTextField;
+	private BitStripView bitStrip;         // whole encoded message; the only view of one too long for the field
 	private JLabel message;
 	private JLabel title1;
 	private JLabel title2;
@@ -62,9 +77,10 @@ public class CodePanel extends JPanel implements ModelView {
 	
 	// State information for internal model of encode/decode
 	private boolean advanceBitwise;   // true when decoding; false when encoding
-	private String plainText;
-	private String encodedText;
-	private ArrayList<Integer> endingBit;    // endingBit[0] is the bit that ends char 0 in encoded text, etc
+	private TextBuffer plainText;
+	private BitBuffer encodedText;        // bits before the first non-bit character, if any
+	private char stopChar;                // that first non-bit character (or 0 if none)
+	private CodewordEnds endingBit;   // endingBit.get(0) is the bit that ends char 0 in encoded text, etc
 	private int curChar;        // index of next char to highlight
 	private int curBit;         // index of next bit to highlight
 	
@@ -73,10 +89,6 @@ public class CodePanel extends JPanel implements ModelView {
 	private RemoteControlPanel controlPanel = new RemoteControlPanel();
 	private RemoteControlListener controlListener;
 	
-	void start() {
-		(new Thread(controlPanel)).start();
-	}
-	
 	public void stop() {
 		controlPanel.stop();
 	}
@@ -91,10 +103,10 @@ public class CodePanel extends JPanel implements ModelView {
 		plainListener = new DocumentListener() {
 			public void changedUpdate(DocumentEvent arg0) { }
 			public void insertUpdate(DocumentEvent arg0) {
-				restartFromPlain();
+				editPlain(arg0.getOffset(), 0, insertedText(arg0));
 			}
 			public void removeUpdate(DocumentEvent arg0) {
-				restartFromPlain();
+				editPlain(arg0.getOffset(), arg0.getLength(), "");
 			}
 		};
 		plainTextField.getDocument().addDocumentListener(plainListener);
@@ -102,10 +114,10 @@ public class CodePanel extends JPanel implements ModelView {
 		encodedListener = new DocumentListener() {
 			public void changedUpdate(DocumentEvent arg0) { }
 			public void insertUpdate(DocumentEvent arg0) {
-				restartFromCoded();
+				editCoded(arg0.getOffset(), 0, insertedText(arg0));
 			}
 			public void removeUpdate(DocumentEvent arg0) {
-				restartFromCoded();
+				editCoded(arg0.getOffset(), arg0.getLength(), "");
 			}
 		};
 		encodedTextField.getDocument().addDocumentListener(encodedListener);
@@ -115,6 +127,34 @@ public class CodePanel extends JPanel implements ModelView {
 		h2 = new DefaultHighlighter();
 		plainTextField.setHighlighter(h1);
 		encodedTextField.setHighlighter(h2);
+		plainStrip = new HighlightStrip(plainTextField, h1) {
+			int itemAt(int offset) {
+				return offset;
+			}
+			int start(int item) {
+				return item;
+			}
+			int end(int item) {
+				return item + 1;
+			}
+			HighlightPainter painter(int item) {
+				return (item >= codedChars() ? errorPainter : p[item % p.length]);
+			}
+		};
+		codeStrip = new HighlightStrip(encodedTextField, h2) {
+			int itemAt(int offset) {
+				return symbolsBefore(offset);
+			}
+			int start(int item) {
+				return startBit(item);
+			}
+			int end(int item) {
+				return 1 + endingBit.get(item);
+			}
+			HighlightPainter painter(int item) {
+				return p[item % p.length];
+			}
+		};
 		
 		//set-up the decode/encode aspect
 		setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
@@ -137,8 +177,8 @@ public class CodePanel extends JPanel implements ModelView {
 			}
 			
 			public void jumpToEnd() {
-				int newCurBit = encodedText.length();
-				int newCurChar = Math.min(1+endingBit.size(), plainText.length());  // last char or possibly first errant char
+				int newCurBit = encodedLength();
+				int newCurChar = Math.min(1+codedChars(), plainText.length());  // last char or possibly first errant char
 				if (curBit != newCurBit || curChar != newCurChar) {
 					curBit = newCurBit;
 					curChar = newCurChar;
@@ -148,18 +188,18 @@ public class CodePanel extends JPanel implements ModelView {
 			
 			public void jumpForward() {
 				if (advanceBitwise) {  // decoding
-					if (curBit < encodedText.length()) {
-						if (curChar < endingBit.size() && curBit == endingBit.get(curChar))
+					if (curBit < encodedLength()) {
+						if (curChar < codedChars() && curBit == endingBit.get(curChar))
 							curChar++;
 						curBit++;
 					}
-					if (curBit >= encodedText.length())
+					if (curBit >= encodedLength())
 						controlPanel.stop();  // reached the end; make sure play stops (if running)
 				} else {   // encoding
-					int lastChar = Math.min(plainText.length(), 1+endingBit.size());
+					int lastChar = Math.min(plainText.length(), 1+codedChars());
 					if (curChar < lastChar) {
 						curChar++;
-						if (curChar <= endingBit.size())
+						if (curChar <= codedChars())
 							curBit = 1 + endingBit.get(curChar-1);
 					}
 					if (curChar >= lastChar)
@@ -185,6 +225,26 @@ public class CodePanel extends JPanel implements ModelView {
 				}
 			}
 			
+			// position is a bit when decoding, and a character when encoding
+			public void jumpTo(int position) {
+				if (advanceBitwise) {
+					curBit = Math.min(position, encodedLength());
+					curChar = symbolsBefore(curBit);
+				} else {
+					curChar = Math.min(position, Math.min(plainText.length(), 1+codedChars()));
+					curBit = startBit(Math.min(curChar, codedChars()));
+				}
+				draw();
+			}
+			
+			public void jumpBy(int n) {
+				int last = advanceBitwise ? encodedLength() : Math.min(plainText.length(), 1+codedChars());
+				int position = (advanceBitwise ? curBit : curChar) + n;
+				jumpTo(Math.min(position, last));
+				if (position >= last)
+					controlPanel.stop();  // reached the end; make sure play stops (if running)
+			}
+			
 		};
 		
 		controlPanel.addRemoteControlListener(controlListener);
@@ -194,6 +254,8 @@ public class CodePanel extends JPanel implements ModelView {
 		title2 = new JLabel("encoded text");
 		title2.setAlignmentX(CENTER_ALIGNMENT);
 		add(title2);
+		bitStrip = new BitStripView(colors);
+		add(bitStrip);
 		restartFromPlain();   // even though empty string
 	}
 	
@@ -202,6 +264,7 @@ public class CodePanel extends JPanel implements ModelView {
 		Font newFont = new Font(currentFont.getFontName(), currentFont.getStyle(), size);
 		encodedTextField.setFont(newFont);
 		plainTextField.setFont(newFont);
+		bitStrip.setFont(newFont);
 		message.setFont(newFont);
 		newFont = new Font(currentFont.getFontName(), currentFont.getStyle(), 3*size/4);
 		title1.setFont(newFont);
@@ -209,129 +272,319 @@ public class CodePanel extends JPanel implements ModelView {
 	}
 
 	/*
-	 * A version that deactivates DocumentListener temporarily when setting text field.
-	 */
-	void setPlainText(String text) {
-		plainTextField.getDocument().removeDocumentListener(plainListener);
-		plainTextField.setText(text);
-		plainTextField.getDocument().addDocumentListener(plainListener);
-	}
-
-	/*
-	 * A version that deactivates DocumentListener temporarily when setting text field.
+	 * Sets field to show the first length characters of text, deactivating
+	 * its DocumentListener temporarily.
+	 * 
+	 * The field's current contents must be a prefix of text (as they are
+	 * whenever draw is called), so only the end of the field is changed.
 	 */
-	void setEncodedText(String text) {
-		encodedTextField.getDocument().removeDocumentListener(encodedListener);
-		encodedTextField.setText(text);
-		encodedTextField.getDocument().addDocumentListener(encodedListener);
+	private void showPrefix(JTextField field, DocumentListener listener, CharSequence text, int length) {
+		Document doc = field.getDocument();
+		doc.removeDocumentListener(listener);
+		try {
+			int shown = doc.getLength();
+			if (shown > length)
+				doc.remove(length, shown - length);
+			else if (shown < length)
+				doc.insertString(shown, text.subSequence(shown, length).toString(), null);
+		} catch (BadLocationException e) { }
+		doc.addDocumentListener(listener);
 	}
 
 	private void restartFromPlain() {
 		advanceBitwise = false;
-		plainText = plainTextField.getText();
-		endingBit = new ArrayList<Integer>();
-		StringBuilder build = new StringBuilder();
-		int numBits = 0;
-		Hashtable<String, String> lookup = master.symbolToCodeHash();
-		for (int j=0; j < plainText.length(); j++) {
-			// lookup table uses escaped special characters
-			String original = HuffmanDemo.printableSymbol(""+plainText.charAt(j));
-			String value = lookup.get(original);   // Need String not char
-			if (value != null) {
-				build.append(value);
-				numBits += value.length();
-				endingBit.add(numBits-1);  // index of last bit of current pattern
+		plainText = new TextBuffer().append(plainTextField.getText());
+		endingBit = new CodewordEnds();
+		encodedText = new BitBuffer();
+		stopChar = 0;
+		extendEncoding();
+		controlListener.jumpToBeginning();  // set up appropriate display
+		dump();
+	}
+	
+	private void restartFromCoded() {
+		advanceBitwise = true;
+		String text = encodedTextField.getText();
+		int bad = firstNonBit(text);
+		stopChar = (bad < 0 ? 0 : text.charAt(bad));
+		encodedText = new BitBuffer();
+		encodedText.append(bad < 0 ? text : text.substring(0, bad));
+		endingBit = new CodewordEnds();
+		plainText = new TextBuffer();
+		decodeFrom(0, 0, Integer.MAX_VALUE);
+		controlListener.jumpToBeginning();  // set up appropriate display
+		dump();
+	}
+	
+	/*
+	 * Applies an edit of the plaintext field, re-encoding only the edited span.
+	 * 
+	 * Codes of characters following the edit are unchanged, and are only
+	 * shifted to their new bit positions.  The plaintext, bits and codeword
+	 * ends are all gap buffers, so an edit costs time proportional to its
+	 * size and to its distance from the previous edit, however long the
+	 * text that follows it.
+	 */
+	private void editPlain(int offset, int removed, String inserted) {
+		if (advanceBitwise) {   // field held a partial decoding, not our plaintext
+			restartFromPlain();
+			return;
+		}
+		int encoded = codedChars();   // encoding stops at the first character not in the alphabet
+		if (offset <= encoded) {
+			int end = Math.min(offset + removed, encoded);
+			int firstBit = startBit(offset);
+			int lastBit = startBit(end);
+			StringBuilder codes = new StringBuilder();
+			int[] ends = new int[inserted.length()];
+			int count = 0;
+			for (int j=0; j < inserted.length(); j++) {
+				String value = codeword(inserted.charAt(j));
+				if (value == null)
+					break;
+				codes.append(value);
+				ends[count++] = firstBit + codes.length() - 1;
+			}
+			if (count == inserted.length() && end == offset + removed) {
+				// splice the new codes in, keeping those of the characters that follow
+				encodedText.replace(firstBit, lastBit, codes.toString());
+				endingBit.replace(offset, end, ends, count, codes.length() - (lastBit - firstBit));
 			} else {
-				// invalid character
-				break;
+				// either an inserted character is not in the alphabet, or the
+				// first such character was removed; the encoding stops anew
+				encodedText.setLength(firstBit);
+				encodedText.append(codes);
+				endingBit.replace(offset, encoded, ends, count, 0);
 			}
 		}
-		encodedText = build.toString();
+		plainText.replace(offset, offset + removed, inserted);
+		extendEncoding();
 		controlListener.jumpToBeginning();  // set up appropriate display
 		dump();
 	}
 	
-	private void restartFromCoded() {
-		advanceBitwise = true;
-		encodedText = encodedTextField.getText();
-		endingBit = new ArrayList<Integer>();
-		StringBuilder build = new StringBuilder();
-		Hashtable<String, String> lookup = master.codeToSymbolHash();
-		String codeword = "";
-		for (int j=0; j < encodedText.length(); j++) {
-			char ch = encodedText.charAt(j);
-			if (ch != '0' && ch != '1') {
-				// BAD character in encoded text field; truncate internal view ending there
-				encodedText = encodedText.substring(0, 1+j);
-				break;  // ignore rest
+	/*
+	 * Applies an edit of the encoded field, re-decoding from the last codeword
+	 * boundary before the edit until decoding again reaches a boundary it had
+	 * reached before the edit; from there on the earlier decoding is reused.
+	 */
+	private void editCoded(int offset, int removed, String inserted) {
+		if (!advanceBitwise || !singleCharSymbols) {
+			restartFromCoded();
+			return;
+		}
+		int length = encodedText.length();
+		if (stopChar == 0 || offset <= length) {   // otherwise the edit follows the first non-bit, and changes nothing
+			int symbol = symbolsBefore(offset);
+			int end = Math.min(offset + removed, length);
+			int delta = inserted.length() - (end - offset);
+			int resumeAt = offset + inserted.length();   // earlier text resumes here
+			String added = inserted;
+			if (stopChar != 0 && offset + removed > length) {
+				// the non-bit that stopped decoding was removed, so what follows is now relevant
+				stopChar = 0;
+				try {
+					Document doc = encodedTextField.getDocument();
+					added += doc.getText(resumeAt, doc.getLength() - resumeAt);
+				} catch (BadLocationException e) { }
+				resumeAt = Integer.MAX_VALUE;
 			}
-			codeword += ch;
-			String value = lookup.get(codeword);
-			if (value != null) {  // reached a complete codeword
-				build.append(HuffmanDemo.rawSymbol(value));
-				endingBit.add(j);
-				codeword = "";
+			int bad = firstNonBit(added);
+			if (bad >= 0) {
+				// BAD character in encoded text field; truncate internal view ending there
+				stopChar = added.charAt(bad);
+				encodedText.setLength(offset);
+				encodedText.append(added.substring(0, bad));
+				resumeAt = Integer.MAX_VALUE;
+			} else {
+				encodedText.replace(offset, end, added);
 			}
+			decodeFrom(symbol, delta, resumeAt);
 		}
-		plainText = build.toString();
 		controlListener.jumpToBeginning();  // set up appropriate display
 		dump();
 	}
 	
+	/*
+	 * Continues encoding of plaintext from the first character not yet encoded,
+	 * up to the end or the first character not in the alphabet.
+	 */
+	private void extendEncoding() {
+		for (int j=codedChars(); j < plainText.length(); j++) {
+			String value = codeword(plainText.charAt(j));
+			if (value == null)
+				break;  // invalid character
+			encodedText.append(value);
+			endingBit.add(encodedText.length()-1);  // index of last bit of current pattern
+		}
+	}
 	
 	/*
-	 * A one size fits all approach to displaying texts and highlights,
-	 * redoing from scratch, rather than taking advantage of existing state.
-	 * If this turns out not to be fast enough, we can work harder to do more.
+	 * Decodes encodedText anew, starting with the given symbol, and replaces
+	 * the plaintext from that symbol on.
+	 * 
+	 * Once a codeword ends at or beyond bit resumeAt-1, at a bit that ended
+	 * a codeword before the edit (delta bits earlier), the remainder of the
+	 * earlier decoding is kept rather than recomputed.
+	 */
+	private void decodeFrom(int symbol, int delta, int resumeAt) {
+		int[] ends = new int[16];
+		int count = 0;
+		StringBuilder build = new StringBuilder();
+		int oldSize = codedChars();
+		int old = symbol;      // first earlier codeword that may still end at a common boundary
+		int resumed = -1;      // last earlier codeword replaced by the new decoding
+		int node = (model == null ? DataModel.NO_NODE : model.rootId());
+		for (int j=startBit(symbol); j < encodedText.length() && resumed < 0; j++) {
+			if (node == DataModel.NO_NODE)
+				continue;   // not a prefix of any codeword; nothing further decodes
+			node = model.decodeStep(node, encodedText.charAt(j));
+			if (node != DataModel.NO_NODE && model.decodedSymbol(node) != null) {  // reached a complete codeword
+				if (node == model.escapeId()) {   // the literal that follows gives the symbol
+					if (j + DataModel.LITERAL_BITS >= encodedText.length())
+						break;   // literal incomplete
+					build.append(DataModel.decodeLiteral(encodedText, j+1));
+					j += DataModel.LITERAL_BITS;
+				} else
+					build.append(model.decodedSymbol(node));
+				if (count == ends.length)
+					ends = Arrays.copyOf(ends, 2*count);
+				ends[count++] = j;
+				node = model.rootId();
+				if (j >= resumeAt - 1) {
+					while (old < oldSize && endingBit.get(old) < j - delta)
+						old++;
+					if (old < oldSize && endingBit.get(old) == j - delta)
+						resumed = old;
+				}
+			}
+		}
+		if (resumed >= 0) {
+			endingBit.replace(symbol, resumed+1, ends, count, delta);
+			plainText.replace(symbol, resumed+1, build.toString());
+		} else {
+			endingBit.replace(symbol, oldSize, ends, count, 0);
+			plainText.setLength(symbol);
+			plainText.append(build);
+		}
+	}
+	
+	/*
+	 * Returns index of the first character of text other than '0' or '1'
+	 * (or -1 if none).
+	 */
+	private static int firstNonBit(String text) {
+		for (int j=0; j < text.length(); j++)
+			if (!isBit(text.charAt(j)))
+				return j;
+		return -1;
+	}
+	
+	/*
+	 * Returns length of encoded text, including the non-bit that ends it, if any.
+	 */
+	private int encodedLength() {
+		return encodedText.length() + (stopChar == 0 ? 0 : 1);
+	}
+	
+	/*
+	 * Returns number of characters encoded (or decoded).
+	 */
+	private int codedChars() {
+		return endingBit.size();
+	}
+	
+	/*
+	 * Returns index of the first bit of the code for the given character.
+	 */
+	private int startBit(int j) {
+		return (j == 0 ? 0 : 1 + endingBit.get(j-1));
+	}
+	
+	/*
+	 * Returns number of codewords ending before the given bit.
+	 */
+	private int symbolsBefore(int bit) {
+		return endingBit.countBefore(bit);
+	}
+	
+	private String codeword(char ch) {
+		return (model == null ? null : model.encode(String.valueOf(ch)));
+	}
+	
+	private static boolean isBit(char ch) {
+		return ch == '0' || ch == '1';
+	}
+	
+	private static String insertedText(DocumentEvent e) {
+		try {
+			return e.getDocument().getText(e.getOffset(), e.getLength());
+		} catch (BadLocationException ex) {
+			return "";
+		}
+	}
+	
+	
+	/*
+	 * Brings the text fields and highlights up to date with curChar and curBit.
+	 * 
+	 * Fields are only changed at their ends, and only their visible parts are
+	 * highlighted (see HighlightStrip), so a step costs the same however long
+	 * the message is.  When encoding, the encoded field is hidden (and left
+	 * empty) once the encoding is longer than FIELD_LIMIT bits, so that no
+	 * step or seek passes more than that many bits through its Document; the
+	 * bit strip shows the encoding in its place.
 	 */
 	private void draw() {
 		if (HuffmanDemo.DEBUG > 1)
 			System.out.println("curChar=" + curChar + ", curBit=" + curBit);
 		
+		controlPanel.setRange(advanceBitwise ? encodedLength() : Math.min(plainText.length(), 1+codedChars()));
+		controlPanel.setPosition(advanceBitwise ? curBit : curChar);
+		// an encoding too long for the field is shown by the bit strip instead
+		boolean fieldShown = (advanceBitwise || encodedText.length() <= FIELD_LIMIT);
+		drawing = true;
 		if (advanceBitwise)
-			setPlainText(plainText.substring(0,curChar));
+			showPrefix(plainTextField, plainListener, plainText, curChar);
 		else
-			setEncodedText(encodedText.substring(0, curBit));
+			showPrefix(encodedTextField, encodedListener, encodedText, fieldShown ? curBit : 0);
+		drawing = false;
+		encodedTextField.setVisible(fieldShown);
+		plainStrip.setReached(curChar);
+		codeStrip.setReached(fieldShown ? Math.min(curChar, codedChars()) : 0);
+		bitStrip.setBits(encodedText, endingBit);
+		bitStrip.setPosition(Math.min(curChar, codedChars()), curBit);
 
 		message.setForeground(Color.black);
 		
-		// clear highlights and rebuild
-		h1.removeAllHighlights();
-		h2.removeAllHighlights();
+		// clear highlights of partial codeword and rebuild
+		for (Object tag : partialTags)
+			h2.removeHighlight(tag);
+		partialTags.clear();
 		boolean partialExists = false;
 		boolean badLast = false;
 
-		for (int j=0; j < curChar; j++) {
-			try {
-				Highlighter.HighlightPainter painter = (j >= endingBit.size() ? errorPainter : p[j % p.length]);
-				h1.addHighlight(j, j+1, painter);
-				if (painter.equals(errorPainter)){
-					message.setText("Character '" + plainText.charAt(j) + "' does not appear in the alphabet");
-					message.setForeground(Color.red);
-					badLast = true;
-				}
-				if (j < endingBit.size()) {
-					int start = (j == 0 ? 0 : endingBit.get(j-1));
-					h2.addHighlight(start, 1+endingBit.get(j), p[j % p.length]);
-				}
-			} catch (BadLocationException e) { }
+		if (curChar > codedChars()) {
+			message.setText("Character '" + plainText.charAt(curChar-1) + "' does not appear in the alphabet");
+			message.setForeground(Color.red);
+			badLast = true;
 		}
 		// look for any leftover bits for partially decoded segment
 		int lastCharBit=0;
-		if (curChar <= endingBit.size()) {
+		if (curChar <= codedChars()) {
 			lastCharBit = (curChar == 0 ? 0 : 1+endingBit.get(curChar-1));
 			if (curBit > lastCharBit) {
 				partialExists = true;
 				try {
 //					Highlighter.HighlightPainter painter = (curChar==plainText.length() ? errorPainter : p[curChar % p.length]);
 					Highlighter.HighlightPainter painter = p[curChar % p.length];
-					char ch = encodedText.charAt(curBit-1);
+					char ch = (curBit > encodedText.length() ? stopChar : encodedText.charAt(curBit-1));
 					if (ch == '0' || ch == '1') {
-						h2.addHighlight(lastCharBit, curBit, painter);
+						partialTags.add(h2.addHighlight(lastCharBit, curBit, painter));
 					} else {
 						badLast = true;
-						h2.addHighlight(lastCharBit, curBit-1, painter);
-						h2.addHighlight(curBit-1, curBit, errorPainter);
+						partialTags.add(h2.addHighlight(lastCharBit, curBit-1, painter));
+						partialTags.add(h2.addHighlight(curBit-1, curBit, errorPainter));
 					}
 				} catch (BadLocationException e) { }
 			}
@@ -346,7 +599,7 @@ public class CodePanel extends JPanel implements ModelView {
 			} else {
 				suffix = encodedText.substring(lastCharBit, curBit);
 			}
-		} else if (curChar > 0 && curChar <= endingBit.size()) {
+		} else if (curChar > 0 && curChar <= codedChars()) {
 			int begin = (curChar > 1 ? 1+endingBit.get(curChar-2) : 0);
 			suffix = encodedText.substring(begin, 1+endingBit.get(curChar-1)); 
 		}
@@ -354,7 +607,10 @@ public class CodePanel extends JPanel implements ModelView {
 			int j = (partialExists ? curChar : curChar-1);
 			Color color = colors[j % colors.length];
 			if (!partialExists) {
-				master.highlightSymbol(plainText.substring(curChar-1, curChar), color);
+				String symbol = plainText.substring(curChar-1, curChar);
+				if (model.hasEscape() && !suffix.equals(model.getEncodeTable().get(symbol)))
+					symbol = model.symbol(model.escapeId());   // coded as a literal
+				master.highlightSymbol(symbol, color);
 				if (advanceBitwise)
 					message.setText("Code " + suffix + " decoded as '" + plainText.charAt(curChar-1) + "'");
 				else
@@ -367,7 +623,9 @@ public class CodePanel extends JPanel implements ModelView {
 			master.highlightSymbol(null,  Color.BLACK);
 			master.highlightPath("", Color.BLACK);
 			if (!badLast) {
-				if (plainText.length() == 0 && encodedText.length() == 0) {
+				if (!plainTextField.isEditable()) {
+					message.setText("Binary data cannot be entered as text");
+				} else if (plainText.length() == 0 && encodedLength() == 0) {
 					message.setText("Input plaintext or encoded text to begin");
 				} else {
 					message.setText("Ready to " + (advanceBitwise ? "decode" : "encode"));
@@ -376,6 +634,83 @@ public class CodePanel extends JPanel implements ModelView {
 		}
 	}
 	
+	/*
+	 * Highlights of the items (characters or codewords) reached so far within
+	 * one text field.
+	 * 
+	 * Only items within the visible part of the field are highlighted.  As
+	 * items are reached, or the field scrolls, the window of highlighted
+	 * items is adjusted at its ends rather than rebuilt.
+	 */
+	private abstract class HighlightStrip {
+		private JTextField field;
+		private Highlighter highlighter;
+		private ArrayDeque<Object> tags = new ArrayDeque<Object>();
+		private int lo, hi;     // items lo..hi-1 are highlighted, in order of tags
+		private int reached;    // number of items reached
+		private int[] visible = {0, 0, -1, -1, -1};   // visible text range, and the scroll, extent and length it is for
+		
+		HighlightStrip(JTextField field, Highlighter highlighter) {
+			this.field = field;
+			this.highlighter = highlighter;
+			field.getHorizontalVisibility().addChangeListener(new ChangeListener() {
+				public void stateChanged(ChangeEvent e) {
+					if (!drawing)
+						refresh();
+				}
+			});
+		}
+		
+		abstract int itemAt(int offset);    // item containing given text offset
+		abstract int start(int item);
+		abstract int end(int item);
+		abstract HighlightPainter painter(int item);
+		
+		void setReached(int count) {
+			reached = count;
+			refresh();
+		}
+		
+		@SuppressWarnings("deprecation")
+		private void refresh() {
+			int first = 0, last = 0;   // items to be highlighted
+			if (reached > 0 && field.getWidth() > 0) {
+				BoundedRangeModel scroll = field.getHorizontalVisibility();
+				int length = field.getDocument().getLength();
+				if (visible[2] != scroll.getValue() || visible[3] != scroll.getExtent() || visible[4] != length) {
+					// mapping points to offsets measures the text, so only do so when the view changes
+					Insets insets = field.getInsets();
+					int y = field.getHeight() / 2;
+					visible[0] = field.viewToModel(new Point(insets.left, y));
+					visible[1] = field.viewToModel(new Point(field.getWidth() - insets.right, y));
+					visible[2] = scroll.getValue();
+					visible[3] = scroll.getExtent();
+					visible[4] = length;
+				}
+				last = Math.min(reached, 1 + itemAt(visible[1]));
+				first = Math.min(last, itemAt(visible[0]));
+			}
+			if (first >= hi || last <= lo) {
+				while (!tags.isEmpty())
+					highlighter.removeHighlight(tags.pollLast());
+				lo = hi = first;
+			}
+			for (; lo < first; lo++)
+				highlighter.removeHighlight(tags.pollFirst());
+			for (; hi > last; hi--)
+				highlighter.removeHighlight(tags.pollLast());
+			try {
+				// a highlight ending at the end of the field grows when the field is appended to
+				if (hi > lo)
+					highlighter.changeHighlight(tags.peekLast(), start(hi-1), end(hi-1));
+				for (; lo > first; lo--)
+					tags.addFirst(highlighter.addHighlight(start(lo-1), end(lo-1), painter(lo-1)));
+				for (; hi < last; hi++)
+					tags.addLast(highlighter.addHighlight(start(hi), end(hi), painter(hi)));
+			} catch (BadLocationException e) { }
+		}
+	}
+	
 	// DEBUGGING USE ONLY
 	private void dump() {
 		if (HuffmanDemo.DEBUG > 0) {
@@ -384,7 +719,7 @@ public class CodePanel extends JPanel implements ModelView {
 			for (int j=0; j < plainText.length(); j++) {
 				String raw = HuffmanDemo.printableSymbol(plainText.substring(j,  j+1));
 				String code = "";
-				if (j < endingBit.size()) {  // there exists a code for this
+				if (j < codedChars()) {  // there exists a code for this
 					int i = (j == 0 ? 0 : 1+endingBit.get(j-1));
 					code = encodedText.substring(i, 1 + endingBit.get(j));
 				}
@@ -394,9 +729,9 @@ public class CodePanel extends JPanel implements ModelView {
 			}
 			
 			// look for leftover bits
-			int stop = (endingBit.size() > 0 ? endingBit.get(endingBit.size()-1) : 0);
-			if (encodedText.length() > 1+stop)
-					second += encodedText.substring(1+stop);
+			int stop = (codedChars() > 0 ? endingBit.get(codedChars()-1) : 0);
+			if (encodedLength() > 1+stop)
+					second += encodedText.substring(1+stop, encodedText.length()) + (stopChar == 0 ? "" : stopChar);
 			
 			System.out.println("Plain: " + first);
 			System.out.println("Coded: " + second);
@@ -404,7 +739,16 @@ public class CodePanel extends JPanel implements ModelView {
 	}
 
 	public void setModel(DataModel m) {
+		model = m;
+		// bytes are coded by value, and have no text form to type or decode into
+		boolean textual = (m.getAlphabet() != DataModel.Alphabet.BYTES);
+		plainTextField.setEditable(textual);
+		encodedTextField.setEditable(textual);
+		singleCharSymbols = true;
+		for (String symbol : m.getDecodeTable().values())
+			singleCharSymbols &= (symbol.length() == 1);
 		plainTextField.setText("");
+		restartFromPlain();   // in case the field was already empty
 	}
 	
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+/**
+ * The positions of the last bits of the codewords of an encoded message,
+ * in increasing order.
+ * 
+ * Positions are kept in a gap buffer, and those after the gap are stored
+ * less a common shift, so that replacing the positions of an edited span
+ * and shifting all those that follow costs time proportional to the size
+ * of the span and to the distance from the previous edit, rather than to
+ * the length of the message.
+ */
+public class CodewordEnds {
+	private int[] ends = new int[16];
+	private int size;
+	private int gapStart;    // entries from gapStart on are stored gapLength places later
+	private int gapLength;
+	private int shift;       // added to the stored value of each entry after the gap
+	
+	/**
+	 * Returns the number of codewords.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Returns the position of the last bit of codeword k.
+	 */
+	public int get(int k) {
+		if (k < 0 || k >= size)
+			throw new IndexOutOfBoundsException("codeword " + k + " of " + size);
+		return (k < gapStart ? ends[k] : ends[k + gapLength] + shift);
+	}
+	
+	/**
+	 * Returns the number of codewords ending before the given bit (which is
+	 * the index of the codeword containing that bit).
+	 */
+	public int countBefore(int bit) {
+		int lo = 0, hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (get(mid) < bit)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+	
+	/**
+	 * Adds a codeword ending at the given bit, after all others.
+	 */
+	public void add(int end) {
+		if (size + gapLength == ends.length)
+			ends = Arrays.copyOf(ends, 2*ends.length);
+		ends[size + gapLength] = end - shift;
+		size++;
+	}
+	
+	/**
+	 * Removes all codewords.
+	 */
+	public void clear() {
+		size = gapStart = gapLength = shift = 0;
+	}
+	
+	/**
+	 * Replaces codewords from through to-1 by codewords ending at the first
+	 * count entries of given array, and shifts the ends of the codewords
+	 * that follow by delta bits.
+	 */
+	public void replace(int from, int to, int[] added, int count, int delta) {
+		if (from < 0 || to > size || from > to)
+			throw new IndexOutOfBoundsException("codewords " + from + " to " + to + " of " + size);
+		moveGap(to);
+		gapLength += to - from;   // removed entries join the gap
+		gapStart = from;
+		size -= to - from;
+		if (gapLength < count)
+			growGap(count - gapLength);
+		System.arraycopy(added, 0, ends, gapStart, count);
+		gapStart += count;
+		gapLength -= count;
+		size += count;
+		shift += delta;
+	}
+	
+	/*
+	 * Moves the gap to just before entry k.
+	 */
+	private void moveGap(int k) {
+		for (; gapStart > k; gapStart--)
+			ends[gapStart - 1 + gapLength] = ends[gapStart - 1] - shift;
+		for (; gapStart < k; gapStart++)
+			ends[gapStart] = ends[gapStart + gapLength] + shift;
+	}
+	
+	/*
+	 * Widens the gap by at least n entries.
+	 */
+	private void growGap(int n) {
+		int extra = Math.max(n, ends.length / 2);
+		int[] grown = ends;
+		if (size + gapLength + extra > ends.length) {
+			grown = new int[Math.max(size + gapLength + extra, 2*ends.length)];
+			System.arraycopy(ends, 0, grown, 0, gapStart);
+		}
+		System.arraycopy(ends, gapStart + gapLength, grown, gapStart + gapLength + extra, size - gapStart);
+		ends = grown;
+		gapLength += extra;
+	}
+}
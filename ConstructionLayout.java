@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Placement of the priority queue of subtrees at each step of the Huffman
+ * construction, as shown by the algorithm views.
+ * 
+ * The subtrees of a row are placed side by side, in the order of
+ * DataModel.getPQTraceIds, with all coordinates in tree units so that
+ * they do not depend on the size of the view or on the vertical scale.
+ * Rows are computed the first time they are needed and the most recently
+ * used ones are kept.  Computed rows are never modified, and a single
+ * instance (see LayoutService) is shared by every view of the same model.
+ */
+public class ConstructionLayout {
+	private static final int MAX_CACHED_ROWS = 64;
+	
+	private DataModel model;
+	private TreeLayout layout;
+	private LinkedHashMap<Integer, Row> rows;
+	
+	/**
+	 * Placement of the subtrees in the priority queue after some number of merges.
+	 */
+	public static class Row {
+		private final DataModel model;
+		private final int k;
+		private final double[] subx;        // x-offset of root of each subtree
+		private final double[] leftWidth;   // total width of the subtrees before each one
+		private final int tallest;          // id of the subtree of greatest height
+		
+		private Row(ConstructionLayout owner, int k) {
+			model = owner.model;
+			this.k = k;
+			int n = model.pqTraceSize(k);
+			subx = new double[n];
+			leftWidth = new double[n+1];
+			int best = DataModel.NO_NODE;
+			for (int j=0; j < n; j++) {
+				int s = model.pqTraceId(k, j);
+				leftWidth[j+1] = leftWidth[j] + owner.layout.getMaxX(s) - owner.layout.getMinX(s);
+				subx[j] = leftWidth[j+1] - owner.layout.getMaxX(s);
+				if (best == DataModel.NO_NODE || model.height(s) > model.height(best))
+					best = s;
+			}
+			tallest = best;
+		}
+		
+		/**
+		 * Returns number of subtrees in the row.
+		 */
+		public int size() {
+			return subx.length;
+		}
+		
+		/**
+		 * Returns id of the j-th subtree, as given by DataModel.pqTraceId.
+		 */
+		public int getId(int j) {
+			return model.pqTraceId(k, j);
+		}
+		
+		/**
+		 * Returns x-coordinate of root of j-th subtree, relative to left end of row.
+		 */
+		public double getX(int j) {
+			return subx[j];
+		}
+		
+		/**
+		 * Returns total width of the subtrees to the left of the j-th one (for 0 <= j <= size()).
+		 */
+		public double getLeftWidth(int j) {
+			return leftWidth[j];
+		}
+		
+		/**
+		 * Returns total width of the row.
+		 */
+		public double getWidth() {
+			return leftWidth[subx.length];
+		}
+		
+		/**
+		 * Returns id of a subtree of greatest height in the row.
+		 */
+		public int getTallest() {
+			return tallest;
+		}
+	}
+	
+	/**
+	 * Creates construction layout, using the given embedding of the final tree.
+	 */
+	public ConstructionLayout(TreeLayout layout) {
+		this.layout = layout;
+		model = layout.getModel();
+		rows = new LinkedHashMap<Integer, Row>(MAX_CACHED_ROWS, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+				return size() > MAX_CACHED_ROWS;
+			}
+		};
+	}
+	
+	public DataModel getModel() {
+		return model;
+	}
+	
+	public TreeLayout getTreeLayout() {
+		return layout;
+	}
+	
+	/**
+	 * Returns number of the final step of the construction.  Steps alternate
+	 * between merging two subtrees (odd steps) and reordering the queue.
+	 */
+	public int getLastStep() {
+		return 2 * model.size() - 3;
+	}
+	
+	/**
+	 * Returns placement of the priority queue after k merges.
+	 */
+	public synchronized Row getRow(int k) {
+		Row row = rows.get(k);
+		if (row == null) {
+			row = new Row(this, k);
+			rows.put(k, row);
+		}
+		return row;
+	}
+}
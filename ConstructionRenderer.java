@@ -0,0 +1,321 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws one frame of the Huffman construction: the priority queue of
+ * subtrees at a given step and, during a merge, the newly merged tree
+ * rising out of the queue, shifting to its new position, and lowering
+ * back into place.
+ * 
+ * A renderer belongs to a single view (it keeps a TreePainter and cached
+ * sprites at that view's scale), while the ConstructionLayout it draws
+ * from may be shared.  The frame's geometry is recomputed only when the
+ * step, merge progress, or size changes.
+ */
+public class ConstructionRenderer {
+	static final long SPRITE_PIXELS = 8L << 20;   // budget for cached subtree sprites (32MB of ARGB)
+	public enum Phase {NONE, RISING, SHIFTING, LOWERING};
+	
+	private ConstructionLayout construction;
+	private DataModel model;
+	private TreePainter painter;
+	private SpriteCache sprites;   // rendered subtrees, reused across animation frames
+	private double aspect;
+	
+	// the frame to be drawn
+	private int step;  // 0=initial, 1=first merge, 2=first PQ.sort, ... 2n-1 complete
+	private Phase phase = Phase.NONE;
+	private double t;
+	private int width, height;
+	private boolean valid;   // whether geometry below is up to date
+	
+	// geometry of the frame, recomputed by layoutStep()
+	private ConstructionLayout.Row row;
+	private double factor;
+	private int numSubs, endJ, splitJ;
+	private int combined;
+	private double boxW, boxH;
+	private double totalWidth, splitWidth, maxHeight;
+	private double padX;
+	
+	/**
+	 * Creates renderer for the given construction.
+	 * @param construction layout of the priority queue at each step
+	 * @param aspect vertical scale of the drawn trees (see TreePainter)
+	 */
+	public ConstructionRenderer(ConstructionLayout construction, double aspect) {
+		this.construction = construction;
+		this.aspect = aspect;
+		model = construction.getModel();
+		painter = new TreePainter(construction.getTreeLayout(), aspect);
+		sprites = new SpriteCache(painter, SPRITE_PIXELS);
+	}
+	
+	/**
+	 * Returns the vertical scale that lets a tree of the model's size fill a
+	 * view of the given dimensions.
+	 */
+	public static double getAspect(DataModel model, int width, int height) {
+		return (1.0 * model.size() * height) / (model.getRoot().getDepth() * width);
+	}
+	
+	public ConstructionLayout getConstruction() {
+		return construction;
+	}
+	
+	/**
+	 * Returns number of the final step of the construction.
+	 */
+	public int getLastStep() {
+		return construction.getLastStep();
+	}
+	
+	/**
+	 * Sets the pixel dimensions of the area being drawn.
+	 */
+	public void setSize(int width, int height) {
+		if (width != this.width || height != this.height) {
+			this.width = width;
+			this.height = height;
+			valid = false;
+		}
+	}
+	
+	/**
+	 * Sets frame to show the given step, with no merge in progress.
+	 */
+	public void setStep(int step) {
+		if (step != this.step || phase != Phase.NONE) {
+			this.step = step;
+			phase = Phase.NONE;
+			valid = false;
+		}
+	}
+	
+	/**
+	 * Sets frame to show the merge that takes place at the given (odd) step,
+	 * with the three phases of the merge taking equal fractions of u.
+	 * 
+	 * @param step the step whose merge is in progress
+	 * @param u fraction of the merge completed, from 0 to 1
+	 */
+	public void setStep(int step, double u) {
+		int k = Math.min(2, (int) (3 * u));
+		this.step = step;
+		phase = (k == 0 ? Phase.RISING : k == 1 ? Phase.SHIFTING : Phase.LOWERING);
+		t = 3 * u - k;
+		valid = false;
+	}
+	
+	/**
+	 * Computes the horizontal placement of each queued subtree for the
+	 * current step, and (for a merge step) where the merged tree goes.
+	 */
+	private void layoutStep() {
+		if (valid)
+			return;
+		int rootId = model.rootId();
+		factor = Math.min(width / painter.getBoundsWidth(rootId), height / painter.getBoundsHeight(rootId));
+
+		row = construction.getRow(step/2);
+		numSubs = row.size();
+		totalWidth = row.getWidth();
+		maxHeight = painter.getBoundsHeight(row.getTallest());
+		
+		endJ = numSubs;
+		splitJ = numSubs;
+		splitWidth = 0;
+		boxW = 0;
+		boxH = 0;
+		combined = DataModel.NO_NODE;
+		if (step % 2 == 1) {
+			endJ -= 2;
+			combined = model.parent(row.getId(numSubs-1));
+			boxW = painter.getBoundsWidth(combined);
+			boxH = Math.max(painter.getBoundsHeight(row.getId(numSubs-1)),
+						    painter.getBoundsHeight(row.getId(numSubs-2)));
+			splitJ = model.pqTraceMergeIndex(step/2);
+			splitWidth = totalWidth - row.getLeftWidth(splitJ);
+		}
+
+		padX = (width - factor*totalWidth)/2;
+		valid = true;
+	}
+	
+	/**
+	 * Returns x-coordinate (in pixels) of merged tree's root, for the current phase.
+	 */
+	private double combinedX() {
+		double combineX = (row.getX(numSubs-2) + row.getX(numSubs-1)) / 2;
+		double adjustX = 0;
+		if (phase == Phase.SHIFTING)
+			adjustX = - t * (splitWidth - boxW);
+		else if (phase == Phase.LOWERING)
+			adjustX = - (splitWidth - boxW);
+		return factor*adjustX + padX + factor*combineX;
+	}
+	
+	/**
+	 * Returns y-coordinate (in pixels) of merged tree's root, for the current phase.
+	 */
+	private double combinedY() {
+		double combineY = maxHeight - 0.5 + aspect;
+		double adjustY = 0;
+		switch (phase) {
+		case RISING:
+			adjustY = - t * boxH;
+			break;
+		case SHIFTING:
+			adjustY = - boxH;
+			break;
+		case LOWERING:
+			adjustY = (t-1) * boxH;
+			if (maxHeight != boxH)
+				adjustY += t * aspect;
+			break;
+		}
+		return factor*adjustY + height - factor*combineY;
+	}
+	
+	/**
+	 * Returns x-coordinate (in pixels) of root of j-th queued subtree, for the current phase.
+	 */
+	private double subtreeX(int j) {
+		double x = padX + factor*row.getX(j);
+		if (j >= splitJ) {
+			if (phase == Phase.SHIFTING)
+				x += t * factor * boxW;
+			else if (phase == Phase.LOWERING)
+				x += factor * boxW;
+		}
+		return x;
+	}
+	
+	/**
+	 * Returns y-coordinate (in pixels) of roots of queued subtrees, for the current phase.
+	 */
+	private double subtreeY() {
+		double y = height - factor*(maxHeight-0.5);
+		if (phase == Phase.LOWERING && maxHeight == boxH)
+			y -= t * factor * aspect;
+		return y;
+	}
+	
+	/**
+	 * Returns region (in pixels) covered by the parts of the frame that
+	 * move during the current animation phase: the merged tree and the
+	 * queued subtrees to the right of where it will be inserted.  Returns
+	 * the whole area if everything may change.
+	 */
+	public Rectangle getMovingBounds() {
+		layoutStep();
+		if (step % 2 == 0 || phase == Phase.NONE || (phase == Phase.LOWERING && maxHeight == boxH))
+			return new Rectangle(0, 0, width, height);
+		Rectangle r = subtreeBounds(combined, combinedX(), combinedY());
+		double y = subtreeY();
+		if (splitJ < endJ) {
+			// queued subtrees are laid out side by side, no taller than maxHeight
+			int margin = (int) Math.ceil(factor/2) + 2;
+			int left = (int) Math.floor(subtreeX(splitJ) + factor*painter.getBoundsMinX(row.getId(splitJ)));
+			int right = (int) Math.ceil(subtreeX(endJ-1) + factor*painter.getBoundsMaxX(row.getId(endJ-1)));
+			Rectangle tail = new Rectangle(left, (int) Math.floor(y - factor*0.5),
+					right - left + 1, (int) Math.ceil(factor*maxHeight) + 1);
+			tail.grow(margin, margin);
+			r.add(tail);
+		}
+		return r;
+	}
+	
+	private Rectangle subtreeBounds(int subroot, double x, double y) {
+		int margin = (int) Math.ceil(factor/2) + 2;   // room for labels and strokes
+		Rectangle r = new Rectangle((int) Math.floor(x + factor*painter.getBoundsMinX(subroot)),
+				(int) Math.floor(y - factor*0.5),
+				(int) Math.ceil(factor*painter.getBoundsWidth(subroot)) + 1,
+				(int) Math.ceil(factor*painter.getBoundsHeight(subroot)) + 1);
+		r.grow(margin, margin);
+		return r;
+	}
+	
+	/**
+	 * Draws the current frame, clearing (only) the clip region first.
+	 * @param g2 Graphics2D context on which to draw
+	 */
+	public void paint(Graphics2D g2) {
+		Rectangle clip = g2.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(0, 0, width, height);
+		g2.clearRect(clip.x, clip.y, clip.width, clip.height);
+		layoutStep();
+
+		if (combined != DataModel.NO_NODE) {
+			double px = combinedX();
+			double py = combinedY();
+			if (step != getLastStep() && phase == Phase.NONE) {
+				painter.drawSelection(g2, combined, row.getId(numSubs-1), factor, px, py, Color.red);
+				painter.drawSelection(g2, combined, row.getId(numSubs-2), factor, px, py, Color.red);
+				painter.draw(g2, combined, factor, px, py);
+			} else
+				sprites.draw(g2, combined, factor, px, py, phase == Phase.NONE);
+		}
+				
+		double y = subtreeY();
+		for (int j=0; j < endJ; j++) {
+			double x = subtreeX(j);
+			int s = row.getId(j);
+			if (x + factor*painter.getBoundsMaxX(s) + factor < clip.x ||
+				x + factor*painter.getBoundsMinX(s) - factor > clip.x + clip.width)
+				continue;  // entirely outside the area being repainted
+			boolean moving = (j >= splitJ && phase != Phase.NONE) || (phase == Phase.LOWERING && maxHeight == boxH);
+			sprites.draw(g2, s, factor, x, y, !moving);
+		}
+	}
+	
+	/**
+	 * Renders a single step of the construction to an image, without
+	 * needing a display.
+	 * 
+	 * @param model model whose construction is drawn
+	 * @param step step to draw, from 0 to 2*model.size()-3
+	 * @param width width of image, in pixels
+	 * @param height height of image, in pixels
+	 * @param font font for labels (or null for the default)
+	 */
+	public static BufferedImage export(DataModel model, int step, int width, int height, Font font) {
+		ConstructionRenderer renderer = new ConstructionRenderer(LayoutService.getConstructionLayout(model),
+				getAspect(model, width, height));
+		renderer.setSize(width, height);
+		renderer.setStep(step);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = image.createGraphics();
+		g2.setBackground(Color.white);
+		g2.setColor(Color.black);
+		if (font != null)
+			g2.setFont(font);
+		renderer.paint(g2);
+		g2.dispose();
+		return image;
+	}
+}
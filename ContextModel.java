@@ -0,0 +1,180 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * An order-1 Huffman code, in which each character is coded with a table
+ * chosen by the character that precedes it.
+ * 
+ * Each sufficiently common context has its own DataModel, whose escape
+ * symbol means that the character is instead coded by a shared fallback
+ * table.  Rarer contexts (and the start of text) use the fallback table
+ * directly, which bounds the number of tables.  The fallback table is
+ * the order-0 code of the whole sample, and itself escapes to a literal
+ * (see DataModel.ESCAPE) for characters never seen.
+ */
+public class ContextModel {
+	private DataModel fallback;
+	private DataModel[] tableAfter;   // table for each preceding char (null if it uses the fallback)
+	private int contexts;             // number of non-null entries of tableAfter
+	
+	/**
+	 * Builds the tables from a sample of raw text.
+	 * 
+	 * @param sample A String designating the original text, with some
+	 *   character other than DataModel.ESCAPE
+	 * @param minContextCount number of times a character must occur in the
+	 *   sample for it to have its own table
+	 */
+	public ContextModel(String sample, int minContextCount) {
+		fallback = DataModel.createFromRaw(sample, true);
+		if (fallback.size() < 2)   // a lone escape symbol would have an empty codeword
+			throw new IllegalArgumentException("sample must have a character other than the escape");
+		
+		int[] occurrences = new int[Character.MAX_VALUE + 1];
+		for (int j=0; j + 1 < sample.length(); j++)
+			occurrences[sample.charAt(j)]++;
+		List<TreeMap<String,Integer>> followers = new ArrayList<TreeMap<String,Integer>>(
+				Collections.<TreeMap<String,Integer>>nCopies(occurrences.length, null));
+		int last = 0;
+		for (int j=0; j + 1 < sample.length(); j++) {
+			char context = sample.charAt(j);
+			if (occurrences[context] < Math.max(1, minContextCount))
+				continue;
+			TreeMap<String,Integer> after = followers.get(context);
+			if (after == null) {
+				after = new TreeMap<String,Integer>();
+				followers.set(context, after);
+			}
+			String s = String.valueOf(sample.charAt(j+1));
+			Integer count = after.get(s);
+			after.put(s, (count == null ? 1 : 1 + count));
+			last = Math.max(last, context);
+		}
+		
+		tableAfter = new DataModel[last + 1];
+		for (int c=0; c <= last; c++) {
+			TreeMap<String,Integer> after = followers.get(c);
+			if (after != null && (after.size() > 1 || !after.containsKey(DataModel.ESCAPE))) {
+				tableAfter[c] = DataModel.createFromFrequencies(after, true);
+				contexts++;
+			}
+		}
+	}
+	
+	/**
+	 * Returns number of contexts with their own table.
+	 */
+	public int contextCount() {
+		return contexts;
+	}
+	
+	/**
+	 * Returns the table with which the character following ch is coded.
+	 */
+	private DataModel table(char ch) {
+		return (ch < tableAfter.length && tableAfter[ch] != null ? tableAfter[ch] : fallback);
+	}
+	
+	/**
+	 * Returns the encoding of text, as a string of 0's and 1's.
+	 */
+	public String encode(String text) {
+		StringBuilder sb = new StringBuilder();
+		DataModel table = fallback;
+		for (int j=0; j < text.length(); j++) {
+			String symbol = String.valueOf(text.charAt(j));
+			String codeword = (table == fallback ? null : table.getEncodeTable().get(symbol));
+			if (codeword == null || symbol.equals(DataModel.ESCAPE)) {
+				if (table != fallback)
+					sb.append(table.getEncodeTable().get(DataModel.ESCAPE));
+				codeword = fallback.encode(symbol);
+			}
+			sb.append(codeword);
+			table = table(text.charAt(j));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Decodes bits into text, ignoring any incomplete codeword at the end.
+	 * 
+	 * Each character is found by walking down a single table's tree (two,
+	 * when its context's table escapes to the fallback).
+	 * @return the text (or null if the bits are not a sequence of codewords)
+	 */
+	public String decode(CharSequence bits) {
+		StringBuilder sb = new StringBuilder();
+		DataModel table = fallback;
+		int node = table.rootId();
+		for (int j=0; j < bits.length(); j++) {
+			node = table.decodeStep(node, bits.charAt(j));
+			if (node == DataModel.NO_NODE)
+				return null;
+			if (node == table.escapeId() && table != fallback) {   // coded by the fallback table instead
+				table = fallback;
+				node = table.rootId();
+				continue;
+			}
+			char ch;
+			if (node == table.escapeId()) {   // the literal that follows gives the symbol
+				if (j + DataModel.LITERAL_BITS >= bits.length())
+					break;
+				ch = DataModel.decodeLiteral(bits, j+1);
+				j += DataModel.LITERAL_BITS;
+			} else if (table.decodedSymbol(node) != null) {
+				ch = table.decodedSymbol(node).charAt(0);
+			} else
+				continue;   // codeword not yet complete
+			sb.append(ch);
+			table = table(ch);
+			node = table.rootId();
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Compares order-0 and order-1 coding of a text file (given as argument)
+	 * or of a short built-in sample.
+	 * @param args
+	 */
+	public static void main(String[] args) throws IOException {
+		String text = "This is a test.\nThis is only a test.\nTesting, one, two three.\n";
+		if (args.length > 0)
+			text = new String(Files.readAllBytes(Paths.get(args[0])), Charset.forName("UTF-8"));
+		
+		DataModel order0 = DataModel.createFromRaw(text, true);
+		ContextModel order1 = new ContextModel(text, 2);
+		String bits0 = order0.encodeText(text);
+		String bits1 = order1.encode(text);
+		System.out.println("characters:     " + text.length());
+		System.out.println("order-0 bits:   " + bits0.length() + " (" + (double) bits0.length() / text.length() + " per char)");
+		System.out.println("order-1 bits:   " + bits1.length() + " (" + (double) bits1.length() / text.length() + " per char)");
+		System.out.println("order-1 tables: " + (1 + order1.contextCount()));
+		System.out.println("round trip:     " + text.equals(order1.decode(bits1)));
+	}
+}
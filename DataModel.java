@@ -17,6 +17,8 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -40,7 +42,52 @@ public class DataModel {
 	private LinkedHashMap<String, Tree> leafMap;
 	private LinkedHashMap<String, Integer> frequencies;
 	private Tree[] algorithmTrace;
-	private Tree[][] pqTrace;
+	private Tree[] sortedLeaves;  // leaves, in increasing order (as first taken from the priority queue)
+	private int[] leavesUsed;     // number of leaves merged, after k merges
+	private int[] mergeIndex;     // position of k-th merged tree in the following priority queue
+	
+	/** Id used by the primitive accessors to denote a missing node. */
+	public static final int NO_NODE = -1;
+	
+	/**
+	 * Raw symbol of the escape leaf (shown as \e).  Its codeword is followed
+	 * by a literal of LITERAL_BITS bits giving a symbol outside the alphabet.
+	 */
+	public static final String ESCAPE = "\uFFFF";
+	
+	/** Number of bits in a literal: the character's UTF-16 value, high bit first. */
+	public static final int LITERAL_BITS = 16;
+	
+	/**
+	 * Kinds of symbols a model codes.  SYMBOLS are strings; CODE_POINTS and
+	 * BYTES are ints, coded through dense arrays indexed by value, and their
+	 * strings serve only for display.
+	 */
+	public enum Alphabet { SYMBOLS, CODE_POINTS, BYTES };
+	
+	// Dense, array-based view of the tree.  Node ids are assigned in
+	// postorder, so children always have smaller ids than their parent.
+	private int[] leftId;
+	private int[] rightId;
+	private int[] parentId;
+	private int[] weightOf;
+	private int[] heightOf;
+	private String[] symbolOf;
+	
+	// Coding tables keyed by raw symbols (escapes such as \s resolved), built
+	// once along with the tree and never modified afterward
+	private Map<String, String> encodeTable;
+	private Map<String, String> decodeTable;
+	private String[] decodedSymbolOf;   // raw symbol at each leaf id (null elsewhere)
+	private int escapeId = NO_NODE;     // leaf of the escape symbol, if any
+	private GreedySegmenter segmenter;  // splits text into the raw symbols (built when first needed)
+	
+	// Coding tables for int symbols (for CODE_POINTS and BYTES only)
+	private Alphabet alphabet = Alphabet.SYMBOLS;
+	private int[] valueOf;        // int symbol at each leaf id (-1 elsewhere)
+	private int[] leafOfValue;    // leaf id of each int symbol (NO_NODE if not in the alphabet)
+	private long[] codeBitsOf;    // codeword of each int symbol, first bit lowest
+	private int[] codeLengthOf;   // length of that codeword
 	
 	/**
 	 * Disallow direct instantiation.
@@ -59,14 +106,38 @@ public class DataModel {
 	 * @param raw A String designating the original text
 	 */
 	public static DataModel createFromRaw(String raw) {
+		return createFromRaw(raw, false);
+	}
+	
+	/**
+	 * Constructs a data model based on a sample of raw text, optionally
+	 * adding an escape symbol (with frequency 1) so that characters absent
+	 * from the sample can still be encoded, as literals.
+	 * @param raw A String designating the original text
+	 * @param escape whether to add the escape symbol
+	 */
+	public static DataModel createFromRaw(String raw, boolean escape) {
+		return createFromRaw(raw, new NGramTokenizer(1), escape);
+	}
+	
+	/**
+	 * Constructs a data model based on a sample of raw text, whose symbols
+	 * are those produced by the given tokenizer (such as words, n-grams,
+	 * or learned subwords).
+	 * 
+	 * Text can then be split into the model's symbols with getSegmenter().
+	 * @param raw A String designating the original text
+	 * @param tokenizer strategy for splitting raw into symbols
+	 * @param escape whether to add the escape symbol
+	 */
+	public static DataModel createFromRaw(String raw, Tokenizer tokenizer, boolean escape) {
 		TreeMap<String,Integer> map = new TreeMap<String, Integer>();
-		for (int i=0; i < raw.length(); i++) {
-			String s = Character.toString(raw.charAt(i));
+		for (String s : tokenizer.tokenize(raw)) {
 			if (!map.containsKey(s))
 				map.put(s, 0);
 			map.put(s, 1 + map.get(s));
 		}
-		return createFromFrequencies(new LinkedHashMap<String,Integer>(map));
+		return build(map, escape, Alphabet.SYMBOLS, true);
 	}
 	
 	/**
@@ -78,27 +149,80 @@ public class DataModel {
 	 * @param freq A Map from string symbols to integer frequencies
 	 */
 	public static DataModel createFromFrequencies(Map<String,Integer> freq) {
+		return createFromFrequencies(freq, false);
+	}
+	
+	/**
+	 * Constructs a data model based on given symbol frequencies, optionally
+	 * adding an escape symbol with frequency 1.
+	 * 
+	 * An escape symbol lets the model encode characters absent from freq, at
+	 * a cost of LITERAL_BITS bits beyond the escape codeword.  Entries of freq
+	 * for the escape character itself (such as \e) are coded that way too,
+	 * so their frequency is added to the escape symbol's; without escape,
+	 * such entries are ordinary symbols.
+	 * 
+	 * @param freq A Map from string symbols to integer frequencies
+	 * @param escape whether to add the escape symbol
+	 */
+	public static DataModel createFromFrequencies(Map<String,Integer> freq, boolean escape) {
+		return build(freq, escape, Alphabet.SYMBOLS, false);
+	}
+	
+	/*
+	 * Builds the model for given frequencies by Huffman's algorithm.
+	 * 
+	 * Symbols are either raw (as split from a sample) or as entered in the
+	 * input dialogs, where \s and the like stand for whitespace; see
+	 * HuffmanDemo.rawSymbol.
+	 */
+	private static DataModel build(Map<String,Integer> freq, boolean escape, Alphabet alphabet, boolean rawKeys) {
+		if (escape) {
+			LinkedHashMap<String,Integer> others = new LinkedHashMap<String,Integer>();
+			int count = 0;
+			for (Map.Entry<String,Integer> entry : freq.entrySet()) {
+				if ((rawKeys ? entry.getKey() : HuffmanDemo.rawSymbol(entry.getKey())).equals(ESCAPE))
+					count += entry.getValue();
+				else
+					others.put(entry.getKey(), entry.getValue());
+			}
+			others.put(ESCAPE, Math.max(1, count));
+			freq = others;
+		}
 		DataModel model = new DataModel();
+		model.alphabet = alphabet;
 		model.frequencies = new LinkedHashMap<String,Integer>(freq);
 		model.algorithmTrace = new Tree[freq.size()-1];
-		model.pqTrace = new Tree[freq.size()][];
 		TreeSet<Tree> pq = new TreeSet<Tree>();  // relying on fact that Tree.compareTo is total order
 		for (Map.Entry<String,Integer> entry : freq.entrySet()) {
 			Tree leaf = new Tree(entry.getKey(), entry.getValue());
 			pq.add(leaf);
 			model.leafMap.put(entry.getKey(), leaf);
 		}
+		
+		// Trees leave the queue in increasing order, and each merged tree is
+		// greater than both of its children and than the previously merged
+		// tree.  So leaves are merged in sorted order, as are merged trees,
+		// and the queue after k merges consists of the unused suffix of each.
+		model.sortedLeaves = pq.toArray(new Tree[0]);
+		model.leavesUsed = new int[freq.size()];
+		model.mergeIndex = new int[freq.size()-1];
+		int used = 0;
 		for (int step=0; step < freq.size() - 1; step++) {
-			model.pqTrace[step] = pq.toArray(new Tree[0]);
+			model.leavesUsed[step] = used;
 			Tree a = pq.pollFirst();
 			Tree b = pq.pollFirst();
+			if (a.isLeaf())
+				used++;
+			if (b.isLeaf())
+				used++;
 			Tree c = new Tree(b,a);  // be consistent with animation view
+			model.mergeIndex[step] = model.leavesAbove(c, used);  // c is the largest merged tree
 			pq.add(c);
 			model.algorithmTrace[step] = c;
 		}
+		model.leavesUsed[freq.size()-1] = used;
 		model.root = pq.pollFirst();
-		model.pqTrace[freq.size()-1] = new Tree[1];
-		model.pqTrace[freq.size()-1][0] = model.root;
 		
 		// Let's build up the codebook
 		for (Map.Entry<String,Tree> leaf : model.leafMap.entrySet()) {
@@ -112,9 +236,88 @@ public class DataModel {
 			model.codebook.put(leaf.getKey(), sb.toString());
 		}
 		
+		model.index(escape, rawKeys);
 		return model;
 	}
 	 
+	/**
+	 * Constructs a data model for binary data, whose symbols are the
+	 * 256 byte values.
+	 * 
+	 * In the codebook, printable ASCII bytes are shown as themselves and
+	 * others in the form \xHH.  Those names are only for display: bytes are
+	 * coded by value (see encodeValue), and the String tables are empty.
+	 * @param data bytes whose frequencies determine the code
+	 */
+	public static DataModel createFromBytes(byte[] data) {
+		int[] count = new int[256];
+		for (byte b : data)
+			count[b & 0xFF]++;
+		return createFromValues(count, Alphabet.BYTES);
+	}
+	
+	/**
+	 * Constructs a data model based on a sample of raw text, with Unicode
+	 * code points (rather than UTF-16 chars) as symbols.
+	 * @param raw A String designating the original text
+	 */
+	public static DataModel createFromCodePoints(String raw) {
+		int max = 0;
+		for (int j=0; j < raw.length(); j += Character.charCount(raw.codePointAt(j)))
+			max = Math.max(max, raw.codePointAt(j));
+		int[] count = new int[max + 1];
+		for (int j=0; j < raw.length(); j += Character.charCount(raw.codePointAt(j)))
+			count[raw.codePointAt(j)]++;
+		return createFromValues(count, Alphabet.CODE_POINTS);
+	}
+	
+	/*
+	 * Builds the model for int symbols with the given counts, and the dense
+	 * tables by which they are coded.
+	 */
+	private static DataModel createFromValues(int[] count, Alphabet alphabet) {
+		LinkedHashMap<String,Integer> freq = new LinkedHashMap<String,Integer>();
+		for (int v=0; v < count.length; v++)
+			if (count[v] > 0)
+				freq.put(valueSymbol(v, alphabet), count[v]);
+		DataModel model = build(freq, false, alphabet, true);
+		model.valueOf = new int[model.nodeCount()];
+		Arrays.fill(model.valueOf, -1);
+		model.leafOfValue = new int[count.length];
+		Arrays.fill(model.leafOfValue, NO_NODE);
+		model.codeBitsOf = new long[count.length];
+		model.codeLengthOf = new int[count.length];
+		for (int v=0; v < count.length; v++) {
+			if (count[v] > 0) {
+				int id = model.leafMap.get(valueSymbol(v, alphabet)).id;
+				model.valueOf[id] = v;
+				model.leafOfValue[v] = id;
+				// with int frequencies, no codeword is longer than 64 bits
+				long bits = 0;
+				int length = 0;
+				for (int node=id; model.parentId[node] != NO_NODE; node = model.parentId[node]) {
+					bits = (bits << 1) | (model.rightId[model.parentId[node]] == node ? 1 : 0);
+					length++;
+				}
+				model.codeBitsOf[v] = bits;
+				model.codeLengthOf[v] = length;
+			}
+		}
+		return model;
+	}
+	
+	/*
+	 * Returns the string by which an int symbol is displayed.
+	 */
+	private static String valueSymbol(int v, Alphabet alphabet) {
+		if (alphabet == Alphabet.CODE_POINTS)
+			return new String(Character.toChars(v));
+		else if (v >= 0x20 && v < 0x7F)
+			return String.valueOf((char) v);
+		else
+			return String.format("\\x%02X", v);
+	}
+	
 	/**
 	 * Constructs the data model based on given symbol codewords.
 	 * 
@@ -129,9 +332,66 @@ public class DataModel {
 		for (Map.Entry<String,String> entry : codebook.entrySet()) {
 			model.addCode(entry.getKey(), entry.getValue());
 		}
+		model.index(false, false);
 		return model;
 	}
 
+	/**
+	 * Assigns dense postorder ids to all nodes and builds the primitive arrays
+	 * behind left(id), right(id), parent(id) and friends.
+	 * @param escape whether the factory added the leaf keyed ESCAPE as the escape symbol
+	 * @param rawKeys whether symbols are raw, rather than as entered in the input dialogs
+	 */
+	private void index(boolean escape, boolean rawKeys) {
+		// reverse of a (node, right, left) preorder is a (left, right, node) postorder
+		ArrayList<Tree> order = new ArrayList<Tree>();
+		ArrayList<Tree> stack = new ArrayList<Tree>();
+		stack.add(root);
+		while (!stack.isEmpty()) {
+			Tree node = stack.remove(stack.size() - 1);
+			order.add(node);
+			if (node.left != null) stack.add(node.left);
+			if (node.right != null) stack.add(node.right);
+		}
+		Collections.reverse(order);
+
+		int n = order.size();
+		leftId = new int[n];
+		rightId = new int[n];
+		parentId = new int[n];
+		weightOf = new int[n];
+		heightOf = new int[n];
+		symbolOf = new String[n];
+		for (int id=0; id < n; id++)
+			order.get(id).id = id;
+		for (int id=0; id < n; id++) {
+			Tree node = order.get(id);
+			leftId[id] = (node.left == null ? NO_NODE : node.left.id);
+			rightId[id] = (node.right == null ? NO_NODE : node.right.id);
+			parentId[id] = (node.parent == null ? NO_NODE : node.parent.id);
+			weightOf[id] = node.freq;
+			heightOf[id] = node.height;
+			symbolOf[id] = node.symbol;
+		}
+		
+		HashMap<String, String> encode = new HashMap<String, String>();
+		HashMap<String, String> decode = new HashMap<String, String>();
+		decodedSymbolOf = new String[n];
+		if (alphabet != Alphabet.BYTES) {   // the \xHH names of bytes are for display only
+			for (Map.Entry<String,Tree> leaf : leafMap.entrySet()) {
+				String raw = (rawKeys ? leaf.getKey() : HuffmanDemo.rawSymbol(leaf.getKey()));
+				String codeword = codebook.get(leaf.getKey());
+				encode.put(raw, codeword);
+				decode.put(codeword, raw);
+				decodedSymbolOf[leaf.getValue().id] = raw;
+			}
+		}
+		if (escape)
+			escapeId = leafMap.get(ESCAPE).id;
+		encodeTable = Collections.unmodifiableMap(encode);
+		decodeTable = Collections.unmodifiableMap(decode);
+	}
+	
 	/**
 	 * Returns number of symbols in the model's codebook.
 	 */
@@ -147,6 +407,442 @@ public class DataModel {
 		return new TreeIterator(root);
 	}
 	
+	/**
+	 * Returns the number of nodes in the tree; valid ids are 0 through nodeCount()-1.
+	 */
+	public int nodeCount() {
+		return leftId.length;
+	}
+	
+	/**
+	 * Returns the id of the root (always the largest id).
+	 */
+	public int rootId() {
+		return root.id;
+	}
+	
+	/**
+	 * Returns id of left child of given node (or NO_NODE, if no left child)
+	 */
+	public int left(int id) {
+		return leftId[id];
+	}
+	
+	/**
+	 * Returns id of right child of given node (or NO_NODE, if no right child)
+	 */
+	public int right(int id) {
+		return rightId[id];
+	}
+	
+	/**
+	 * Returns id of parent of given node (or NO_NODE, for the root)
+	 */
+	public int parent(int id) {
+		return parentId[id];
+	}
+	
+	/**
+	 * Returns frequency associated with subtree at given node.
+	 * 
+	 * @return Will be 0 if frequency data not available
+	 */
+	public int weight(int id) {
+		return weightOf[id];
+	}
+	
+	/**
+	 * Returns string symbol associated with given node.
+	 */
+	public String symbol(int id) {
+		return symbolOf[id];
+	}
+	
+	/**
+	 * Returns length of longest path from given node to a leaf.
+	 */
+	public int height(int id) {
+		return heightOf[id];
+	}
+	
+	/**
+	 * Returns id of leaf associated with symbol
+	 * @return id (or NO_NODE if symbol not found)
+	 */
+	public int leafId(String symbol) {
+		Tree leaf = leafMap.get(symbol);
+		return (leaf == null ? NO_NODE : leaf.id);
+	}
+	
+	/**
+	 * Returns codeword for the given raw symbol.
+	 * 
+	 * Unlike getCodebookMap(), the lookup is by raw symbol, so a symbol
+	 * entered as \s is found as " ".  If the model has an escape symbol, a
+	 * single character outside the alphabet (or the escape character itself)
+	 * is coded as the escape codeword followed by its literal.
+	 * @return codeword (or null if symbol cannot be encoded)
+	 */
+	public String encode(String rawSymbol) {
+		if (escapeId != NO_NODE && rawSymbol.length() == 1
+				&& (rawSymbol.equals(ESCAPE) || !encodeTable.containsKey(rawSymbol)))
+			return encodeTable.get(ESCAPE) + literal(rawSymbol.charAt(0));
+		return encodeTable.get(rawSymbol);
+	}
+	
+	/**
+	 * Returns raw symbol for the given codeword (which may be the escape
+	 * codeword followed by a literal).
+	 * @return raw symbol (or null if not a complete codeword)
+	 */
+	public String decode(String codeword) {
+		if (escapeId != NO_NODE) {
+			String escape = encodeTable.get(ESCAPE);
+			if (codeword.equals(escape))
+				return null;   // literal missing
+			if (codeword.length() == escape.length() + LITERAL_BITS && codeword.startsWith(escape))
+				return String.valueOf(decodeLiteral(codeword, escape.length()));
+		}
+		return decodeTable.get(codeword);
+	}
+	
+	/**
+	 * Returns the kind of symbols the model codes.
+	 */
+	public Alphabet getAlphabet() {
+		return alphabet;
+	}
+	
+	/**
+	 * Returns int symbol (code point or byte value) at given leaf.
+	 * @return value (or -1 if not a leaf, or the alphabet is SYMBOLS)
+	 */
+	public int value(int id) {
+		return (valueOf == null ? -1 : valueOf[id]);
+	}
+	
+	/**
+	 * Returns id of leaf associated with an int symbol
+	 * @return id (or NO_NODE if value not in the alphabet)
+	 */
+	public int leafId(int value) {
+		if (leafOfValue == null || value < 0 || value >= leafOfValue.length)
+			return NO_NODE;
+		return leafOfValue[value];
+	}
+	
+	/**
+	 * Appends the codeword for an int symbol to out.
+	 * @return whether the value is in the alphabet (if not, out is unchanged)
+	 */
+	public boolean encodeValue(int value, BitBuffer out) {
+		if (leafId(value) == NO_NODE)
+			return false;
+		out.appendWord(codeBitsOf[value], codeLengthOf[value]);
+		return true;
+	}
+	
+	/**
+	 * Encodes binary data with a BYTES model.
+	 * @return the encoding (or null if some byte is not in the alphabet)
+	 */
+	public BitBuffer encodeBytes(byte[] data) {
+		BitBuffer out = new BitBuffer();
+		for (byte b : data)
+			if (!encodeValue(b & 0xFF, out))
+				return null;
+		return out;
+	}
+	
+	/**
+	 * Encodes text with a CODE_POINTS model.
+	 * @return the encoding (or null if some code point is not in the alphabet)
+	 */
+	public BitBuffer encodeCodePoints(String text) {
+		BitBuffer out = new BitBuffer();
+		for (int j=0; j < text.length(); j += Character.charCount(text.codePointAt(j)))
+			if (!encodeValue(text.codePointAt(j), out))
+				return null;
+		return out;
+	}
+	
+	/**
+	 * Decodes bits into int symbols, ignoring any incomplete codeword at the end.
+	 * @return the values (or null if the bits are not a sequence of codewords)
+	 */
+	public int[] decodeValues(BitBuffer bits) {
+		if (valueOf == null)
+			return null;
+		int[] values = new int[16];
+		int count = 0;
+		int node = root.id;
+		for (int j=0; j < bits.length(); j++) {
+			node = (bits.get(j) ? rightId[node] : leftId[node]);
+			if (node == NO_NODE)
+				return null;
+			if (valueOf[node] >= 0) {
+				if (count == values.length)
+					values = Arrays.copyOf(values, 2*count);
+				values[count++] = valueOf[node];
+				node = root.id;
+			}
+		}
+		return Arrays.copyOf(values, count);
+	}
+	
+	/**
+	 * Decodes bits with a BYTES model.
+	 * @return the bytes (or null if the bits are not a sequence of codewords)
+	 */
+	public byte[] decodeBytes(BitBuffer bits) {
+		int[] values = decodeValues(bits);
+		if (values == null)
+			return null;
+		byte[] data = new byte[values.length];
+		for (int j=0; j < values.length; j++)
+			data[j] = (byte) values[j];
+		return data;
+	}
+	
+	/**
+	 * Decodes bits with a CODE_POINTS model.
+	 * @return the text (or null if the bits are not a sequence of codewords)
+	 */
+	public String decodeCodePoints(BitBuffer bits) {
+		int[] values = decodeValues(bits);
+		return (values == null ? null : new String(values, 0, values.length));
+	}
+	
+	/**
+	 * Returns a tokenizer that splits text into the model's (raw) symbols,
+	 * greedily taking the longest symbol at each position.
+	 */
+	public Tokenizer getSegmenter() {
+		if (segmenter == null) {
+			ArrayList<String> symbols = new ArrayList<String>(encodeTable.keySet());
+			symbols.remove(ESCAPE);
+			segmenter = new GreedySegmenter(symbols);
+		}
+		return segmenter;
+	}
+	
+	/**
+	 * Encodes text, split into symbols by getSegmenter().
+	 * @return the encoding (or null if some part of text cannot be encoded)
+	 */
+	public String encodeText(String text) {
+		StringBuilder sb = new StringBuilder();
+		for (String symbol : getSegmenter().tokenize(text)) {
+			String codeword = encode(symbol);
+			if (codeword == null)
+				return null;
+			sb.append(codeword);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Decodes bits into text, ignoring any incomplete codeword at the end.
+	 * @return the text (or null if the bits are not a sequence of codewords)
+	 */
+	public String decodeText(CharSequence bits) {
+		StringBuilder sb = new StringBuilder();
+		int node = root.id;
+		for (int j=0; j < bits.length(); j++) {
+			node = decodeStep(node, bits.charAt(j));
+			if (node == NO_NODE)
+				return null;
+			if (node == escapeId) {   // the literal that follows gives the symbol
+				if (j + LITERAL_BITS >= bits.length())
+					break;
+				sb.append(decodeLiteral(bits, j+1));
+				j += LITERAL_BITS;
+				node = root.id;
+			} else if (decodedSymbolOf[node] != null) {
+				sb.append(decodedSymbolOf[node]);
+				node = root.id;
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns whether the model has an escape symbol, and so can encode
+	 * any single character.
+	 */
+	public boolean hasEscape() {
+		return escapeId != NO_NODE;
+	}
+	
+	/**
+	 * Returns id of the escape symbol's leaf (or NO_NODE if none).
+	 */
+	public int escapeId() {
+		return escapeId;
+	}
+	
+	/**
+	 * Returns the literal for a character, as LITERAL_BITS bits.
+	 */
+	private static String literal(char ch) {
+		StringBuilder sb = new StringBuilder(LITERAL_BITS);
+		for (int k=LITERAL_BITS-1; k >= 0; k--)
+			sb.append((ch >>> k & 1) == 0 ? '0' : '1');
+		return sb.toString();
+	}
+	
+	/**
+	 * Returns the character given by the literal at bits[start..start+LITERAL_BITS).
+	 */
+	public static char decodeLiteral(CharSequence bits, int start) {
+		int value = 0;
+		for (int k=0; k < LITERAL_BITS; k++)
+			value = 2*value + (bits.charAt(start + k) == '1' ? 1 : 0);
+		return (char) value;
+	}
+	
+	/**
+	 * Returns unmodifiable map from raw symbols to codewords (empty for
+	 * BYTES, whose symbols are coded by value; see encodeValue).
+	 */
+	public Map<String,String> getEncodeTable() {
+		return encodeTable;
+	}
+	
+	/**
+	 * Returns unmodifiable map from codewords to raw symbols (empty for BYTES).
+	 */
+	public Map<String,String> getDecodeTable() {
+		return decodeTable;
+	}
+	
+	/**
+	 * Advances a decoder one bit down the tree.
+	 * 
+	 * Decoding starts at rootId(); once decodedSymbol(id) is non-null a
+	 * codeword is complete and decoding resumes at the root.
+	 * @param id current node
+	 * @param bit either '0' or '1'
+	 * @return id of child (or NO_NODE, if no such codeword)
+	 */
+	public int decodeStep(int id, char bit) {
+		return (bit == '0' ? leftId[id] : rightId[id]);
+	}
+	
+	/**
+	 * Returns raw symbol decoded upon reaching given node.
+	 * 
+	 * For the escape leaf this is ESCAPE, and the actual symbol is given by
+	 * the literal that follows (see decodeLiteral).
+	 * @return raw symbol (or null, if node is not a leaf of the code, or
+	 *   the alphabet is BYTES; see value)
+	 */
+	public String decodedSymbol(int id) {
+		return decodedSymbolOf[id];
+	}
+	
+	/**
+	 * Returns number of leaves greater than t, among sortedLeaves[from..].
+	 */
+	private int leavesAbove(Tree t, int from) {
+		int lo = from, hi = sortedLeaves.length;   // first leaf greater than t is within [lo, hi]
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sortedLeaves[mid].compareTo(t) < 0)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return sortedLeaves.length - lo;
+	}
+	
+	/**
+	 * Returns the r-th smallest (sub)tree in the priority queue after k merges.
+	 * 
+	 * That queue is the merge of two sorted runs, the unused leaves and the
+	 * unused merged trees, so this is found by binary search on how many of
+	 * the r+1 smallest are leaves.
+	 */
+	private Tree pqTraceTree(int k, int r) {
+		int la = leavesUsed[k];
+		int na = sortedLeaves.length - la;     // leaves in queue: sortedLeaves[la..]
+		int lb = 2*k - la;
+		int nb = k - lb;                       // merged trees in queue: algorithmTrace[lb..k-1]
+		int lo = Math.max(0, r + 1 - nb), hi = Math.min(r + 1, na);
+		while (lo < hi) {
+			int i = (lo + hi) >>> 1;           // try taking i leaves and r+1-i merged trees
+			int j = r + 1 - i;
+			if (j > 0 && sortedLeaves[la + i].compareTo(algorithmTrace[lb + j - 1]) < 0)
+				lo = i + 1;
+			else
+				hi = i;
+		}
+		int j = r + 1 - lo;
+		if (lo == 0)
+			return algorithmTrace[lb + j - 1];
+		if (j == 0)
+			return sortedLeaves[la + lo - 1];
+		Tree leaf = sortedLeaves[la + lo - 1];
+		Tree merged = algorithmTrace[lb + j - 1];
+		return (leaf.compareTo(merged) > 0 ? leaf : merged);
+	}
+	
+	/**
+	 * Returns the (sub)trees in the priority queue after k merges, from
+	 * highest to lowest frequency.
+	 */
+	private Tree[] pqTraceTrees(int k) {
+		int la = leavesUsed[k];
+		int lb = 2*k - la;
+		Tree[] result = new Tree[sortedLeaves.length - k];
+		int a = sortedLeaves.length - 1, b = k - 1;
+		for (int j=0; j < result.length; j++) {
+			if (b < lb || (a >= la && sortedLeaves[a].compareTo(algorithmTrace[b]) > 0))
+				result[j] = sortedLeaves[a--];
+			else
+				result[j] = algorithmTrace[b--];
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns ids of (sub)trees, as they existed after k merges in the algorithm.
+	 * 
+	 * @param k number of merges that have taken place, for 0 <= k < size()
+	 * @return array of ids, sorted from highest to lowest frequency.
+	 */
+	public int[] getPQTraceIds(int k) {
+		Tree[] trees = pqTraceTrees(k);
+		int[] result = new int[trees.length];
+		for (int j=0; j < result.length; j++)
+			result[j] = trees[j].id;
+		return result;
+	}
+	
+	/**
+	 * Returns number of (sub)trees in the priority queue after k merges.
+	 */
+	public int pqTraceSize(int k) {
+		return sortedLeaves.length - k;
+	}
+	
+	/**
+	 * Returns id of j-th (sub)tree after k merges, in the order of getPQTraceIds(k).
+	 */
+	public int pqTraceId(int k, int j) {
+		return pqTraceTree(k, pqTraceSize(k) - 1 - j).id;
+	}
+	
+	/**
+	 * Returns position of the tree created by merge k+1 within the following
+	 * step's priority queue, i.e., the j for which pqTraceId(k+1, j) is that tree.
+	 * 
+	 * @param k number of merges that have taken place before, for 0 <= k < size()-1
+	 */
+	public int pqTraceMergeIndex(int k) {
+		return mergeIndex[k];
+	}
+	
 	/**
 	 * Returns iterators to (sub)trees, as they existed after k merges in the algorithm.
 	 * 
@@ -154,9 +850,10 @@ public class DataModel {
 	 * @return array of TreeIterators, sorted from highest to lowest frequency.
 	 */
 	public TreeIterator[] getPQTrace(int k) {
-		TreeIterator[] result = new TreeIterator[pqTrace[k].length];
+		Tree[] trees = pqTraceTrees(k);
+		TreeIterator[] result = new TreeIterator[trees.length];
 		for (int j=0; j < result.length; j++)
-			result[result.length - 1 - j] = new TreeIterator(pqTrace[k][j]);
+			result[j] = new TreeIterator(trees[j]);
 		return result;
 	}
 	
@@ -180,6 +877,12 @@ public class DataModel {
 		}
 		walk.symbol = symbol;
 		leafMap.put(symbol, walk);
+		
+		// update cached heights on the path back to the root, stopping
+		// as soon as an ancestor is already at least that tall
+		int h = walk.height;
+		for (Tree up = walk.parent; up != null && up.height <= h; up = up.parent)
+			up.height = ++h;
 	}
 	
 	/**
@@ -271,6 +974,14 @@ public class DataModel {
 				return null;
 		}
 		
+		/**
+		 * Returns the dense id of this position, for use with the
+		 * primitive accessors of the model.
+		 */
+		public int getId() {
+			return current.id;
+		}
+		
 		/**
 		 * Returns frequency associated with subtree.
 		 * 
@@ -290,16 +1001,12 @@ public class DataModel {
 		/**
 		 * Returns length of longest path from this location to a leaf.
 		 * 
-		 * For example, if it is a leaf, it has depth 0.
+		 * For example, if it is a leaf, it has depth 0.  The value is
+		 * cached when the model is built, so this is constant time.
 		 * @return int depth
 		 */
 		public int getDepth() {
-			int depth = 0;
-			if (current.left != null)
-				depth = 1 + getLeft().getDepth();
-			if (current.right != null)
-				depth = Math.max(depth, 1 + getRight().getDepth());
-			return depth;
+			return current.height;
 		}
 		
 		/**
@@ -334,6 +1041,8 @@ public class DataModel {
 		private Tree parent;
 		private String symbol="";
 		private int freq;
+		private int height;   // length of longest path down to a leaf
+		private int id;       // dense postorder id, assigned by DataModel.index
 		
 		/**
 		 * Creates new tree composed of given subtrees.
@@ -352,6 +1061,8 @@ public class DataModel {
 				right.parent = this;
 				freq += right.freq;
 			}
+			height = 1 + Math.max(left == null ? -1 : left.height,
+					right == null ? -1 : right.height);
 		}
 
 		/**
@@ -380,6 +1091,10 @@ public class DataModel {
 			return parent;
 		}
 		
+		public boolean isLeaf() {
+			return left == null && right == null;
+		}
+		
 		public int getFrequency() {
 			return freq;
 		}
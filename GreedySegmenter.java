@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A tokenizer that splits text using a given vocabulary, by repeatedly
+ * taking the longest vocabulary entry that starts at the current position.
+ * 
+ * A character that starts no entry becomes a symbol of its own (so that a
+ * model with an escape symbol can still encode it).
+ */
+public class GreedySegmenter implements Tokenizer {
+	private HashSet<String> vocabulary;
+	private int longest;     // length of longest entry of vocabulary
+	
+	/**
+	 * @param vocabulary Collection of strings that may be used as symbols
+	 */
+	public GreedySegmenter(Collection<String> vocabulary) {
+		this.vocabulary = new HashSet<String>();
+		for (String entry : vocabulary) {
+			if (!entry.isEmpty()) {
+				this.vocabulary.add(entry);
+				longest = Math.max(longest, entry.length());
+			}
+		}
+	}
+
+	public List<String> tokenize(String text) {
+		ArrayList<String> tokens = new ArrayList<String>();
+		int start = 0;
+		while (start < text.length()) {
+			int end = Math.min(start + longest, text.length());
+			while (end > start + 1 && !vocabulary.contains(text.substring(start, end)))
+				end--;
+			tokens.add(text.substring(start, Math.max(end, start + 1)));
+			start = Math.max(end, start + 1);
+		}
+		return tokens;
+	}
+}
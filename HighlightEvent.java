@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.awt.Color;
+import java.util.EventObject;
+
+/**
+ * Event describing the latest symbol selection and path highlighting,
+ * after any number of changes within one frame have been combined.
+ * 
+ * A symbol selection and a path highlight are shown alternately in the
+ * tree, so isPathLatest tells which of the two was set more recently.
+ */
+@SuppressWarnings("serial")
+public class HighlightEvent extends EventObject {
+	private boolean selectionChanged;
+	private String symbol;
+	private Color symbolColor;
+	private boolean pathChanged;
+	private String path;
+	private Color pathColor;
+	private boolean pathLatest;
+	
+	public HighlightEvent(Object src, boolean selectionChanged, String symbol, Color symbolColor,
+			boolean pathChanged, String path, Color pathColor, boolean pathLatest) {
+		super(src);
+		this.selectionChanged = selectionChanged;
+		this.symbol = symbol;
+		this.symbolColor = symbolColor;
+		this.pathChanged = pathChanged;
+		this.path = path;
+		this.pathColor = pathColor;
+		this.pathLatest = pathLatest;
+	}
+	
+	/**
+	 * Returns whether the symbol selection changed.
+	 */
+	public boolean isSelectionChanged() {
+		return selectionChanged;
+	}
+	
+	/**
+	 * Returns the selected symbol (or null, if none selected).
+	 */
+	public String getSelectedSymbol() {
+		return symbol;
+	}
+	
+	/**
+	 * Returns color for the selected symbol (or null for the default).
+	 */
+	public Color getSelectionColor() {
+		return symbolColor;
+	}
+	
+	/**
+	 * Returns whether the highlighted path changed.
+	 */
+	public boolean isPathChanged() {
+		return pathChanged;
+	}
+	
+	/**
+	 * Returns the highlighted path, as a string of 0's and 1's from the root.
+	 */
+	public String getPath() {
+		return path;
+	}
+	
+	/**
+	 * Returns color for the highlighted path (or null for the default).
+	 */
+	public Color getPathColor() {
+		return pathColor;
+	}
+	
+	/**
+	 * Returns true if the path was set after the symbol selection.
+	 */
+	public boolean isPathLatest() {
+		return pathLatest;
+	}
+}
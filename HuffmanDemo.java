@@ -25,7 +25,8 @@ import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
-import java.util.Hashtable;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -56,6 +57,7 @@ public class HuffmanDemo extends JApplet{
 	private CodePanel coderView;
 	private TableView tableView;
 	private TreeView treeView;
+	private ViewEventBus bus;
 	
 	/*
 	 * method to stop playing
@@ -77,8 +79,6 @@ public class HuffmanDemo extends JApplet{
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(WIDTH, HEIGHT);
         frame.setVisible(true);
-        //resizer.setFrame(frame);
-        frame.addComponentListener(resizer);
 	}
 
 	/**
@@ -118,7 +118,6 @@ public class HuffmanDemo extends JApplet{
 		final JPanel standardPanel = new JPanel();
 		treeView = new TreeView();
 		coderView = new CodePanel(this);
-		coderView.start();
 
 		// Algorithm View
 		final AlgorithmViewPanel algView = new AlgorithmViewPanel();  // Note: used to be AlgorithmView instance
@@ -146,10 +145,27 @@ public class HuffmanDemo extends JApplet{
 		standardPanel.add(treeView, BorderLayout.CENTER);
 		tableView.setBorder(BorderFactory.createBevelBorder(BevelBorder.LOWERED));
 		standardPanel.add(tableView, BorderLayout.EAST);
+		bus = new ViewEventBus();
 		tableView.addSymbolSelectionListener(new SymbolSelectionListener()
 		{
 			public void selectionChanged(SymbolSelectionEvent e) {
-				treeView.setSymbolSelection(e.getSelectedSymbol());
+				bus.selectSymbol(e.getSelectedSymbol(), null);
+			}
+		});
+		bus.addHighlightListener(new HighlightListener()
+		{
+			public void highlightChanged(HighlightEvent e) {
+				if (e.isSelectionChanged())
+					tableView.setSymbolSelection(e.getSelectedSymbol());
+				if (e.isPathLatest()) {
+					if (e.isPathChanged())
+						treeView.setPathHighlight(e.getPath(), e.getPathColor());
+				} else if (e.isSelectionChanged()) {
+					if (e.getSelectionColor() == null)
+						treeView.setSymbolSelection(e.getSelectedSymbol());
+					else
+						treeView.setSymbolSelection(e.getSelectedSymbol(), e.getSelectionColor());
+				}
 			}
 		});
 		standardPanel.add(coderView, BorderLayout.SOUTH);
@@ -219,6 +235,42 @@ public class HuffmanDemo extends JApplet{
 		});
 		menu.add(item);
 		
+		item = new JMenuItem("Binary File");
+		item.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_4, Toolkit.getDefaultToolkit().getMenuShortcutKeyMask()));
+		item.addActionListener(new ActionListener()
+		{
+			public void actionPerformed(ActionEvent arg0) {
+				JFileChooser chooser = new JFileChooser();
+				if (chooser.showOpenDialog(HuffmanDemo.this) != JFileChooser.APPROVE_OPTION)
+					return;
+				byte[] data;
+				try {
+					data = Files.readAllBytes(chooser.getSelectedFile().toPath());
+				} catch (IOException e) {
+					JOptionPane.showMessageDialog(HuffmanDemo.this, "Unable to read file: " + e.getMessage());
+					return;
+				}
+				if (data.length == 0) {
+					JOptionPane.showMessageDialog(HuffmanDemo.this, "File is empty");
+					return;
+				}
+				// symbols are byte values; the codebook shows them as text only for display
+				model = DataModel.createFromBytes(data);
+				lastFreq = lastCodebook = model;
+				bus.setModel(model);
+				viewCards.show(viewPanel, "standard");
+				viewMenu.setEnabled(true);
+				algSubMenu.setEnabled(model.hasFrequencyData());
+				repaint();
+			}
+		});
+		menu.add(item);
+		
+		// models built from raw text or frequencies may include an escape symbol
+		final JCheckBoxMenuItem escapeItem = new JCheckBoxMenuItem("Escape Unseen Symbols");
+		menu.addSeparator();
+		menu.add(escapeItem);
+		
 		menuBar.add(viewMenu);
 		
 		item = new JMenuItem("Encode/Decode");
@@ -305,6 +357,8 @@ public class HuffmanDemo extends JApplet{
 		menuBar.add(fontSize);
 
 		final ModelView[] views = {tableView, treeView, algView, coderView};
+		for (ModelView mv : views)
+			bus.addModelView(mv);
 		inputDialog.addInputListener(new InputListener()
 		{
 			public void inputSubmitted(Object input) {
@@ -312,11 +366,11 @@ public class HuffmanDemo extends JApplet{
 					switch (inputMode) {
 					case RAW:
 						lastRaw = (String) input;
-						model = DataModel.createFromRaw(lastRaw);
+						model = DataModel.createFromRaw(lastRaw, escapeItem.isSelected());
 						lastFreq = lastCodebook = model;
 						break;
 					case FREQ:
-						model = DataModel.createFromFrequencies((LinkedHashMap<String, Integer>) input);
+						model = DataModel.createFromFrequencies((LinkedHashMap<String, Integer>) input, escapeItem.isSelected());
 						lastFreq = lastCodebook = model;
 						break;
 					case CODE:
@@ -324,13 +378,10 @@ public class HuffmanDemo extends JApplet{
 						lastCodebook = model;
 						break;
 					}
-					for (ModelView mv : views)
-						mv.setModel(model);
+					bus.setModel(model);
 					viewCards.show(viewPanel, "standard");
 					viewMenu.setEnabled(true);
 					algSubMenu.setEnabled(model.hasFrequencyData());
-					repaint();
-					paint(viewPanel.getGraphics());
 				}
 				topCards.show(getContentPane(), "main");
 				repaint();
@@ -339,15 +390,18 @@ public class HuffmanDemo extends JApplet{
 		});
 		
 		//add components to resizer
-		//resizer.addComponent(tableView);
-		//resizer.addComponent(treeView);
+		resizer = new ReSizer();
+		resizer.addComponent(tableView);
+		resizer.addComponent(treeView);
+		addComponentListener(resizer);
 		
 	}
 	
 	/**
 	 * Utility to replace whitespace characters with escape sequences.
 	 * 
-	 * Specifically, it replaces space with \s, newline with \n, and tab as \t
+	 * Specifically, it replaces space with \s, newline with \n, and tab as \t,
+	 * and the escape symbol (DataModel.ESCAPE) with \e
 	 * @param sym
 	 * @return String instance after replacements
 	 */
@@ -356,6 +410,7 @@ public class HuffmanDemo extends JApplet{
 		temp = temp.replace(" ", "\\s");
 		temp = temp.replace("\n", "\\n");
 		temp = temp.replace("\t", "\\t");
+		temp = temp.replace(DataModel.ESCAPE, "\\e");
 		return temp;
 	}
 
@@ -364,24 +419,16 @@ public class HuffmanDemo extends JApplet{
 		temp = temp.replace("\\s", " ");
 		temp = temp.replace("\\n", "\n");
 		temp = temp.replace("\\t", "\t");
+		temp = temp.replace("\\e", DataModel.ESCAPE);
 		return temp;
 	}
 
-	public Hashtable<String, String> codeToSymbolHash() {
-		return tableView.codeToSymbolHash();
-	}
-
-	public Hashtable<String, String> symbolToCodeHash() {
-		return tableView.symbolToCodeHash();
-	}
-
 	public void highlightSymbol(String value, Color color) {
-		treeView.setSymbolSelection(value, color);
-		tableView.setSymbolSelection(value);
+		bus.selectSymbol(value, color);
 	}
 	
 	public void highlightPath(String code, Color color) {
-		treeView.setPathHighlight(code, color);
+		bus.highlightPath(code, color);
 	}
 
 }
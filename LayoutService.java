@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Hands out the geometry computed for a model, so that every view of the
+ * same model shares a single TreeLayout (which in turn caches node
+ * y-coordinates for each vertical scale in use) and ConstructionLayout.
+ * 
+ * Layouts are only remembered while some view still refers to them, so
+ * switching models does not keep old geometry alive.  Layouts are
+ * read-only once computed and may be used from any thread.
+ */
+public class LayoutService {
+	private static final WeakHashMap<DataModel, WeakReference<TreeLayout>> treeLayouts =
+			new WeakHashMap<DataModel, WeakReference<TreeLayout>>();
+	private static final WeakHashMap<DataModel, WeakReference<ConstructionLayout>> constructionLayouts =
+			new WeakHashMap<DataModel, WeakReference<ConstructionLayout>>();
+	
+	private LayoutService() { }
+	
+	/**
+	 * Returns embedding of the model's tree, computing it only if no view
+	 * is currently using one.
+	 */
+	public static TreeLayout getTreeLayout(DataModel model) {
+		synchronized (treeLayouts) {
+			WeakReference<TreeLayout> ref = treeLayouts.get(model);
+			TreeLayout result = (ref == null ? null : ref.get());
+			if (result == null) {
+				result = new TreeLayout(model);
+				treeLayouts.put(model, new WeakReference<TreeLayout>(result));
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * Returns the priority queue placements for the model's construction,
+	 * computing it only if no view is currently using one.
+	 */
+	public static ConstructionLayout getConstructionLayout(DataModel model) {
+		synchronized (constructionLayouts) {
+			WeakReference<ConstructionLayout> ref = constructionLayouts.get(model);
+			ConstructionLayout result = (ref == null ? null : ref.get());
+			if (result == null) {
+				result = new ConstructionLayout(getTreeLayout(model));
+				constructionLayouts.put(model, new WeakReference<ConstructionLayout>(result));
+			}
+			return result;
+		}
+	}
+}
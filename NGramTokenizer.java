@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A tokenizer whose symbols are consecutive blocks of n characters
+ * (the last of which may be shorter).
+ */
+public class NGramTokenizer implements Tokenizer {
+	private int n;
+	
+	/**
+	 * @param n number of characters per symbol (at least 1)
+	 */
+	public NGramTokenizer(int n) {
+		if (n < 1)
+			throw new IllegalArgumentException("n must be positive");
+		this.n = n;
+	}
+
+	public List<String> tokenize(String text) {
+		ArrayList<String> tokens = new ArrayList<String>();
+		for (int start=0; start < text.length(); start += n)
+			tokens.add(text.substring(start, Math.min(start + n, text.length())));
+		return tokens;
+	}
+}
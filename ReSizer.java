@@ -17,21 +17,58 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 
+/**
+ * Refits registered components when the window is resized.
+ * 
+ * Resize events arriving in quick succession (as while dragging a window
+ * edge) are coalesced, so components are only refit once the size has
+ * settled for DEBOUNCE_MILLIS.  The expensive part of the work (see
+ * Resizable.prepareFit) then runs on a background thread, after which the
+ * components are refit on the event dispatch thread and repainted once.
+ */
 public class ReSizer implements ComponentListener{
+	static final int DEBOUNCE_MILLIS = 150;   // quiet period before refitting
+	
+	private static final ExecutorService fitter = Executors.newSingleThreadExecutor(
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "ReSizer layout");
+					t.setDaemon(true);
+					return t;
+				}
+			});
 
 	private ArrayList<Resizable> subComponents = new ArrayList<Resizable>();
 	private JFrame frame;
+	private Component resized;    // most recently resized component
+	private Timer debounce;
+	private int generation;       // incremented for each refit, so outdated ones can be dropped
 	
 	ReSizer() {
-		
+		debounce = new Timer(DEBOUNCE_MILLIS, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				startFit();
+			}
+		});
+		debounce.setRepeats(false);
 	}
 	ReSizer(JFrame f) {
+		this();
 		frame = f;
 	}
 	
@@ -51,22 +88,47 @@ public class ReSizer implements ComponentListener{
 	}
 
 	public void componentResized(ComponentEvent e) {
-		for(Resizable r: subComponents) {
-			try {
-			r.reFit();
-			}
-			catch(NullPointerException n) {
-				if (r.getClass() == TreeView.class)
-				{}
-				else
-					throw n;
-			}
-		}
-		frame.paintComponents(frame.getGraphics());
+		resized = e.getComponent();
+		debounce.restart();
 	}
 
 	public void componentShown(ComponentEvent e) {
 		
 	}
+	
+	/**
+	 * Prepares all components in the background, then finishes on the
+	 * event dispatch thread (unless another resize has started meanwhile).
+	 */
+	private void startFit() {
+		final int current = ++generation;
+		final Resizable[] components = subComponents.toArray(new Resizable[subComponents.size()]);
+		final ArrayList<Runnable> jobs = new ArrayList<Runnable>();
+		for (Resizable r : components) {
+			Runnable job = r.prepareFit();   // captures size and state here, on the event thread
+			if (job != null)
+				jobs.add(job);
+		}
+		fitter.execute(new Runnable() {
+			public void run() {
+				for (Runnable job : jobs)
+					job.run();
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						if (current == generation && !debounce.isRunning())
+							finishFit(components);
+					}
+				});
+			}
+		});
+	}
+	
+	private void finishFit(Resizable[] components) {
+		for (Resizable r : components)
+			r.reFit();
+		Component target = (frame != null ? frame : resized);
+		if (target != null)
+			target.repaint();
+	}
 
 }
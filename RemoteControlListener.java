@@ -24,4 +24,17 @@ public interface RemoteControlListener {
 	public void jumpBackward();
 	public void jumpToBeginning();
 	
+	/**
+	 * Seeks directly to the given position, as offered by
+	 * RemoteControlPanel.setRange.
+	 */
+	public void jumpTo(int position);
+	
+	/**
+	 * Moves forward n steps at once, as a single update; used in place
+	 * of n calls to jumpForward when playing fast.  Like jumpForward, it
+	 * should call RemoteControlPanel.stop on reaching the end.
+	 */
+	public void jumpBy(int n);
+	
 }
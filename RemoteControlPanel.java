@@ -22,13 +22,25 @@ import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JPanel;
+import javax.swing.JSlider;
 import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
-public class RemoteControlPanel extends JPanel implements Runnable {
+public class RemoteControlPanel extends JPanel {
+	// playback speeds offered, in steps per second
+	private static final int[] SPEEDS = {1, 2, 5, 10, 30, 100, 1000, 10000};
+	private static final int MIN_DELAY = 40;  // shortest time between timer ticks, in milliseconds
+	
 	private boolean run = false;  // boolean to denote whether currently in "play" mode
+	private int stepsPerTick = 1;  // more than one means listeners get jumpBy rather than jumpForward
 	private ArrayList<RemoteControlListener> listeners = new ArrayList<RemoteControlListener>();
 	private JButton playNpause;
+	private JSlider seeker;
+	private boolean seeking;  // true while the client sets the slider, so listeners are not told
+	private Timer timer;
 	
 	public RemoteControlPanel() {
 		final JButton resetButton = new JButton("<<");
@@ -45,12 +57,22 @@ public class RemoteControlPanel extends JPanel implements Runnable {
 		add(forwardButton);
 		final JButton endButton = new JButton(">>");
 		add(endButton);
-		final Timer timer = new Timer(1000, new ActionListener() { 
+		seeker = new JSlider(0, 0, 0);
+		seeker.setToolTipText("seek");
+		add(seeker);
+		String[] speedNames = new String[SPEEDS.length];
+		for (int i = 0; i < SPEEDS.length; i++)
+			speedNames[i] = SPEEDS[i] + "/s";
+		final JComboBox<String> speed = new JComboBox<String>(speedNames);
+		speed.setToolTipText("steps per second");
+		add(speed);
+		timer = new Timer(1000, new ActionListener() { 
 			public void actionPerformed(ActionEvent e) {
-				try{
-					forwardButton.getActionListeners()[0].actionPerformed(new ActionEvent("", ActionEvent.ACTION_PERFORMED, ""));
-				} catch (Exception ex){
-					ex.printStackTrace();
+				for (RemoteControlListener listener : listeners) {
+					if (stepsPerTick == 1)
+						listener.jumpForward();
+					else
+						listener.jumpBy(stepsPerTick);
 				}
 			}
 		});
@@ -111,6 +133,20 @@ public class RemoteControlPanel extends JPanel implements Runnable {
 			}
 		});
 		
+		speed.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				setSpeed(SPEEDS[speed.getSelectedIndex()]);
+			}
+		});
+		
+		seeker.addChangeListener(new ChangeListener() {
+			public void stateChanged(ChangeEvent e) {
+				if (!seeking)
+					for (RemoteControlListener listener : listeners)
+						listener.jumpTo(seeker.getValue());
+			}
+		});
+		
 		
 	}
 		
@@ -126,12 +162,35 @@ public class RemoteControlPanel extends JPanel implements Runnable {
 			playNpause.getActionListeners()[0].actionPerformed(new ActionEvent("", ActionEvent.ACTION_PERFORMED, ""));
 	}
 
+	/*
+	 * Timer ticks come at most every MIN_DELAY milliseconds; faster
+	 * speeds are reached by taking several steps per tick.
+	 */
+	private void setSpeed(int stepsPerSecond) {
+		stepsPerTick = (MIN_DELAY * stepsPerSecond + 999) / 1000;  // rounded up
+		timer.setDelay(1000 * stepsPerTick / stepsPerSecond);
+	}
+
 	public void addRemoteControlListener(RemoteControlListener listener) {
 		listeners.add(listener);
 	}
-
-
-	public void run() {
-
+	
+	/**
+	 * Sets the positions offered by the seek slider to 0 through last.
+	 */
+	public void setRange(int last) {
+		seeking = true;
+		seeker.setMaximum(Math.max(0, last));
+		seeking = false;
+	}
+	
+	/**
+	 * Moves the seek slider to the client's current position (without
+	 * notifying listeners).
+	 */
+	public void setPosition(int position) {
+		seeking = true;
+		seeker.setValue(position);
+		seeking = false;
 	}
 }
@@ -18,5 +18,19 @@
  */
 
 public interface Resizable {
+	/**
+	 * Captures the component's current size and state, and returns the
+	 * expensive computation that reFit will need for them.  Called on the
+	 * event dispatch thread; the returned job runs on a background thread,
+	 * so it may use only what was captured here, and must not modify Swing
+	 * state.  reFit is called afterward on the event dispatch thread.
+	 * 
+	 * @return job to run in the background (or null if nothing to prepare)
+	 */
+	public Runnable prepareFit();
+	
+	/**
+	 * Adjusts the component to its current size.
+	 */
 	public void reFit();
 }
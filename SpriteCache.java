@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Caches images ("sprites") of rendered subtrees, so that subtrees which
+ * do not change from frame to frame can be drawn with a single image copy.
+ * 
+ * Sprites are keyed by subtree id and are only reused at the scale for which
+ * they were rendered.  The least recently used sprites are evicted once the
+ * total number of cached pixels exceeds a budget.
+ */
+public class SpriteCache {
+	private static final int PAD = 2;   // pixels of margin around each subtree's bounding box
+	
+	private TreePainter painter;
+	private long maxPixels;
+	private long totalPixels;
+	private LinkedHashMap<Integer, Sprite> sprites;
+	
+	/**
+	 * Rendered image of one subtree.
+	 */
+	private static class Sprite {
+		double unit;          // scale at which it was rendered
+		BufferedImage image;
+		int rootX, rootY;     // pixel location of subtree root within image
+		double fracX, fracY;  // sub-pixel phase of the root when it was rendered
+	}
+	
+	/**
+	 * Creates an empty cache.
+	 * @param painter TreePainter used to render subtrees
+	 * @param maxPixels budget for total size of all cached sprites
+	 */
+	public SpriteCache(TreePainter painter, long maxPixels) {
+		this.painter = painter;
+		this.maxPixels = maxPixels;
+		sprites = new LinkedHashMap<Integer, Sprite>(16, 0.75f, true);  // access order, for LRU
+	}
+	
+	/**
+	 * Draws subtree with root node centered at given point, rendering (and
+	 * caching) its sprite if there is not already a suitable one.
+	 * 
+	 * A sprite only matches direct drawing exactly when placed at the same
+	 * sub-pixel offset at which it was rendered.  If exact is false, a sprite
+	 * rendered at another offset is reused anyway (and may be off by a pixel),
+	 * which suits subtrees in motion; otherwise it is rendered again.
+	 * 
+	 * @param g2 Graphics2D context on which to draw
+	 * @param subroot id of root of subtree within data model
+	 * @param unit number of pixels for one "unit" in coordinate space
+	 * @param x x-coordinate (in pixels) for center of subtree root
+	 * @param y y-coordinate (in pixels) for center of subtree root
+	 * @param exact whether sprite must match direct drawing pixel for pixel
+	 */
+	public void draw(Graphics2D g2, int subroot, double unit, double x, double y, boolean exact) {
+		Sprite sprite = sprites.get(subroot);
+		if (sprite == null || sprite.unit != unit ||
+				(exact && (sprite.fracX != x - Math.floor(x) || sprite.fracY != y - Math.floor(y)))) {
+			if (sprite != null)
+				remove(subroot);
+			sprite = render(g2, subroot, unit, x, y);
+			sprites.put(subroot, sprite);
+			totalPixels += pixels(sprite);
+			evict();
+		}
+		int left = (int) Math.floor(x - sprite.fracX + 0.5) - sprite.rootX;
+		int top = (int) Math.floor(y - sprite.fracY + 0.5) - sprite.rootY;
+		g2.drawImage(sprite.image, left, top, null);
+	}
+	
+	/**
+	 * Discards all cached sprites.
+	 */
+	public void clear() {
+		sprites.clear();
+		totalPixels = 0;
+	}
+	
+	private Sprite render(Graphics2D g2, int subroot, double unit, double x, double y) {
+		Sprite sprite = new Sprite();
+		sprite.unit = unit;
+		sprite.fracX = x - Math.floor(x);
+		sprite.fracY = y - Math.floor(y);
+		sprite.rootX = PAD + (int) Math.ceil(-unit * painter.getBoundsMinX(subroot));
+		sprite.rootY = PAD + (int) Math.ceil(unit * 0.5);
+		int width = sprite.rootX + 1 + PAD + (int) Math.ceil(unit * painter.getBoundsMaxX(subroot));
+		int height = sprite.rootY + 1 + PAD + (int) Math.ceil(unit * (painter.getBoundsHeight(subroot) - 0.5));
+		sprite.image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+		Graphics2D sg = sprite.image.createGraphics();
+		sg.setFont(g2.getFont());
+		sg.setRenderingHints(g2.getRenderingHints());
+		painter.draw(sg, subroot, unit, sprite.rootX + sprite.fracX, sprite.rootY + sprite.fracY);
+		sg.dispose();
+		return sprite;
+	}
+	
+	private void remove(int subroot) {
+		Sprite old = sprites.remove(subroot);
+		if (old != null)
+			totalPixels -= pixels(old);
+	}
+	
+	/**
+	 * Evicts least recently used sprites until within budget (always keeping
+	 * the most recently used one).
+	 */
+	private void evict() {
+		Iterator<Sprite> it = sprites.values().iterator();
+		while (totalPixels > maxPixels && sprites.size() > 1) {
+			totalPixels -= pixels(it.next());
+			it.remove();
+		}
+	}
+	
+	private static long pixels(Sprite sprite) {
+		return (long) sprite.image.getWidth() * sprite.image.getHeight();
+	}
+}
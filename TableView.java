@@ -22,20 +22,26 @@ import java.awt.Color;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.FontMetrics;
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import javax.swing.JComponent;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellRenderer;
 import javax.swing.table.TableColumn;
+import javax.swing.table.TableModel;
 
 /**
  * Creates a view of a data model as a table.
@@ -43,29 +49,190 @@ import javax.swing.table.TableColumn;
  * First column will be the symbol, and second column will be the codeword. If
  * frequency data is available, then it will be given in a third column.
  * 
+ * Rows are held in parallel arrays, and nothing is done per row beyond
+ * filling them in: column widths are measured on a sample of rows (plus the
+ * rows with the longest symbol, codeword and frequency), selection finds a
+ * symbol's row through the model's leaf index, and sorting uses a
+ * permutation computed once per column.  So the table stays responsive
+ * for codebooks with a very large number of symbols.
  */
 @SuppressWarnings("serial")
 class TableView extends JComponent implements ModelView, Resizable {
 	private static int MARGIN = 1;
+	private static final int SAMPLE_ROWS = 100;   // rows measured when fitting columns
 	
-	private ArrayList<Item> entries;
+	private DataModel model;
+	private String[] symbols = new String[0];
+	private String[] codewords = new String[0];
+	private int[] freqs = new int[0];
+	private int[] rowOfNode;    // row of each leaf, indexed by DataModel node id
+	private int[] widestRows;   // rows with longest symbol, longest codeword and largest frequency
 	boolean showFrequencies;
 	private JTable table;
 	private AbstractTableModel tableModel;
+	private PermutationSorter sorter;
 	private HashSet<SymbolSelectionListener> listeners;
+	private boolean selecting;  // whether selection is being set by setSymbolSelection
+	private boolean measured;   // whether column widths and row heights fit the current font and contents
 
 	/**
-	 * Inner class to represent information for a single row.
+	 * Sorts rows by one column at a time, using an ordering of the rows
+	 * that is computed the first time each column is sorted and then
+	 * reused (in reverse, for descending order).
 	 */
-	private class Item {
-		public String symbol;
-		public String codeword;
-		public int freq;
-
-		public Item(String sym, String code, int freq) {
-			symbol = sym;
-			codeword = code;
-			this.freq = freq;
+	private class PermutationSorter extends RowSorter<TableModel> {
+		private int[][] ascending = new int[3][];   // sorted order of rows, for each column
+		private List<SortKey> sortKeys = Collections.emptyList();
+		private int[] viewToModel;   // null when unsorted
+		private int[] modelToView;
+
+		public TableModel getModel() {
+			return tableModel;
+		}
+
+		public void toggleSortOrder(int column) {
+			SortOrder order = SortOrder.ASCENDING;
+			if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+					&& sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING)
+				order = SortOrder.DESCENDING;
+			setSortKeys(Collections.singletonList(new SortKey(column, order)));
+		}
+
+		public int convertRowIndexToModel(int index) {
+			checkIndex(index);
+			return (viewToModel == null ? index : viewToModel[index]);
+		}
+
+		public int convertRowIndexToView(int index) {
+			checkIndex(index);
+			return (modelToView == null ? index : modelToView[index]);
+		}
+		
+		private void checkIndex(int index) {
+			if (index < 0 || index >= symbols.length)
+				throw new IndexOutOfBoundsException("Invalid index");
+		}
+
+		public void setSortKeys(List<? extends SortKey> keys) {
+			int[] previous = viewToModel;
+			if (previous == null) {
+				previous = new int[symbols.length];
+				for (int r=0; r < previous.length; r++)
+					previous[r] = r;
+			}
+			if (keys == null || keys.isEmpty() || keys.get(0).getSortOrder() == SortOrder.UNSORTED) {
+				sortKeys = Collections.emptyList();
+				viewToModel = modelToView = null;
+			} else {
+				SortKey key = keys.get(0);
+				sortKeys = Collections.singletonList(key);
+				int[] order = getOrder(key.getColumn());
+				int n = order.length;
+				viewToModel = new int[n];
+				modelToView = new int[n];
+				boolean up = (key.getSortOrder() == SortOrder.ASCENDING);
+				for (int r=0; r < n; r++) {
+					viewToModel[r] = order[up ? r : n-1-r];
+					modelToView[viewToModel[r]] = r;
+				}
+			}
+			fireSortOrderChanged();
+			fireRowSorterChanged(previous);
+		}
+
+		public List<? extends SortKey> getSortKeys() {
+			return sortKeys;
+		}
+
+		public int getViewRowCount() {
+			return symbols.length;
+		}
+
+		public int getModelRowCount() {
+			return symbols.length;
+		}
+
+		/**
+		 * Returns rows in increasing order of given column (ties in row order).
+		 */
+		private int[] getOrder(int column) {
+			if (ascending[column] == null) {
+				int n = symbols.length;
+				int[] order = new int[n];
+				if (column == 2) {
+					// frequencies are non-negative ints, so sort (freq, row) pairs packed in longs
+					long[] keys = new long[n];
+					for (int r=0; r < n; r++)
+						keys[r] = ((long) freqs[r] << 32) | r;
+					Arrays.sort(keys);
+					for (int r=0; r < n; r++)
+						order[r] = (int) keys[r];
+				} else if (column == 1) {
+					// codewords are 0's and 1's, for which plain string order agrees with a Collator's
+					for (int r=0; r < n; r++)
+						order[r] = r;
+					mergeSort(order, new int[n], 0, n, codewords);
+				} else {
+					// same (locale-sensitive) order that a TableRowSorter gives strings
+					Collator collator = Collator.getInstance();
+					CollationKey[] keys = new CollationKey[n];
+					for (int r=0; r < n; r++) {
+						order[r] = r;
+						keys[r] = collator.getCollationKey(HuffmanDemo.printableSymbol(symbols[r]));
+					}
+					mergeSort(order, new int[n], 0, n, keys);
+				}
+				ascending[column] = order;
+			}
+			return ascending[column];
+		}
+
+		public void modelStructureChanged() {
+			ascending = new int[3][];
+			sortKeys = Collections.emptyList();
+			viewToModel = modelToView = null;
+		}
+
+		public void allRowsChanged() {
+			ascending = new int[3][];
+			setSortKeys(sortKeys);
+		}
+
+		public void rowsInserted(int firstRow, int endRow) {
+			allRowsChanged();
+		}
+
+		public void rowsDeleted(int firstRow, int endRow) {
+			allRowsChanged();
+		}
+
+		public void rowsUpdated(int firstRow, int endRow) {
+			allRowsChanged();
+		}
+
+		public void rowsUpdated(int firstRow, int endRow, int column) {
+			allRowsChanged();
+		}
+	}
+	
+	/**
+	 * Stable sort of rows order[lo..hi) by their keys.
+	 */
+	private static <T extends Comparable<? super T>> void mergeSort(int[] order, int[] temp, int lo, int hi, T[] keys) {
+		if (hi - lo < 2)
+			return;
+		int mid = (lo + hi) >>> 1;
+		mergeSort(order, temp, lo, mid, keys);
+		mergeSort(order, temp, mid, hi, keys);
+		if (keys[order[mid-1]].compareTo(keys[order[mid]]) <= 0)
+			return;   // already in order
+		System.arraycopy(order, lo, temp, lo, hi - lo);
+		int a = lo, b = mid;
+		for (int k = lo; k < hi; k++) {
+			if (b >= hi || (a < mid && keys[temp[a]].compareTo(keys[temp[b]]) <= 0))
+				order[k] = temp[a++];
+			else
+				order[k] = temp[b++];
 		}
 	}
 
@@ -73,7 +240,6 @@ class TableView extends JComponent implements ModelView, Resizable {
 	 * Constructs a new Table View, but with an empty data model.
 	 */
 	public TableView(int height) {
-		entries = new ArrayList<Item>();
 		listeners = new HashSet<SymbolSelectionListener>();
 		showFrequencies = true;
 
@@ -89,18 +255,17 @@ class TableView extends JComponent implements ModelView, Resizable {
 			}
 
 			public int getRowCount() {
-				return entries.size();
+				return symbols.length;
 			}
 
 			public Object getValueAt(int row, int col) {
-				Item it = entries.get(row);
 				switch (col) {
 				case 0:
-					return HuffmanDemo.printableSymbol(it.symbol);
+					return HuffmanDemo.printableSymbol(symbols[row]);
 				case 1:
-					return it.codeword;
+					return codewords[row];
 				case 2:
-					return (showFrequencies ? it.freq : null);
+					return (showFrequencies ? freqs[row] : null);
 				}
 				return null;
 			}
@@ -113,7 +278,8 @@ class TableView extends JComponent implements ModelView, Resizable {
 
 		table = new JTable(tableModel);
 		table.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
-		table.setAutoCreateRowSorter(true);
+		sorter = new PermutationSorter();
+		table.setRowSorter(sorter);
 		tableModel.addTableModelListener(table);
 
 		table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -124,9 +290,9 @@ class TableView extends JComponent implements ModelView, Resizable {
 		table.getSelectionModel().addListSelectionListener(
 				new ListSelectionListener() {
 					public void valueChanged(ListSelectionEvent e) {
-						if (!e.getValueIsAdjusting()) {
+						if (!e.getValueIsAdjusting() && !selecting) {
 							int k = table.getSelectedRow();
-							String sym = (k == -1 ? null : entries.get(table.convertRowIndexToModel(k)).symbol);
+							String sym = (k == -1 ? null : symbols[table.convertRowIndexToModel(k)]);
 							for (SymbolSelectionListener l : listeners)
 								l.selectionChanged(new SymbolSelectionEvent(this, sym));
 						}
@@ -145,19 +311,34 @@ class TableView extends JComponent implements ModelView, Resizable {
 	 */
 	public void setModel(DataModel m) {
 		setSymbolSelection(null);
-		entries.clear();
 		Map<String, String> codeMap = m.getCodebookMap();
 		Map<String, Integer> freqMap = m.getFrequencyMap();
 		showFrequencies = m.hasFrequencyData();
 		
+		int n = codeMap.size();
+		symbols = new String[n];
+		codewords = new String[n];
+		freqs = new int[n];
+		rowOfNode = new int[m.nodeCount()];
+		widestRows = new int[3];
+		int row = 0;
 		for (Map.Entry<String, String> entry : codeMap.entrySet()) {
 			String sym = entry.getKey();
-			String code = entry.getValue();
-			int f = (showFrequencies ? freqMap.get(sym) : 0);
-			Item it = new Item(sym, code, f);
-			entries.add(it);
+			symbols[row] = sym;
+			codewords[row] = entry.getValue();
+			freqs[row] = (showFrequencies ? freqMap.get(sym) : 0);
+			rowOfNode[m.leafId(sym)] = row;
+			if (sym.length() > symbols[widestRows[0]].length())
+				widestRows[0] = row;
+			if (codewords[row].length() > codewords[widestRows[1]].length())
+				widestRows[1] = row;
+			if (freqs[row] > freqs[widestRows[2]])
+				widestRows[2] = row;
+			row++;
 		}
+		model = m;
 		tableModel.fireTableStructureChanged();
+		measured = false;
 		reFit();
 		table.setSize(table.getPreferredScrollableViewportSize());
 	}
@@ -181,6 +362,7 @@ class TableView extends JComponent implements ModelView, Resizable {
 		table.setFont(new Font(currentFont.getName(), currentFont.getStyle(), size));
 		// make header font halfsize relative to contents
 		table.getTableHeader().setFont(new Font(currentFont.getName(), currentFont.getStyle(), size/2));
+		measured = false;
 	}
 
 	/**
@@ -192,11 +374,27 @@ class TableView extends JComponent implements ModelView, Resizable {
 		return size;
 	}
 
+	/**
+	 * Nothing to prepare; cell sizes depend on the font and contents rather
+	 * than on the size of the view, and are measured by reFit only after
+	 * those change.
+	 */
+	public Runnable prepareFit() {
+		return null;
+	}
+
 	public void reFit() {
-		for (int column = table.getColumnCount() - 1; column >= 0; column--)
-			setColumnWidth(column);
-		for (int row = table.getRowCount() - 1; row >= 0; row--)
-			setRowHeight(row);
+		if (!measured) {
+			int[] rows = sampleRows();
+			for (int column = table.getColumnCount() - 1; column >= 0; column--)
+				setColumnWidth(column, rows);
+			int pref = 0;
+			for (int row : rows)
+				pref = Math.max(pref, measureRowHeight(row));
+			if (pref > 0)
+				table.setRowHeight(pref + 2*MARGIN);
+			measured = true;
+		}
 		table.setPreferredScrollableViewportSize(new Dimension(table.getPreferredSize().width,
 															   getBounds().height * 19/20));
 		table.revalidate();
@@ -204,7 +402,29 @@ class TableView extends JComponent implements ModelView, Resizable {
 	//	paint(getGraphics());
 	}
 	
+	/**
+	 * Returns (view) rows whose cells are measured to fit the columns: rows
+	 * spaced evenly through the table, plus those with the longest symbol,
+	 * the longest codeword and the largest frequency.
+	 */
+	private int[] sampleRows() {
+		int n = table.getRowCount();
+		if (n == 0)
+			return new int[0];
+		int count = Math.min(n, SAMPLE_ROWS);
+		int[] rows = new int[count + widestRows.length];
+		for (int k=0; k < count; k++)
+			rows[k] = (int) ((long) k * n / count);
+		for (int k=0; k < widestRows.length; k++)
+			rows[count + k] = table.convertRowIndexToView(widestRows[k]);
+		return rows;
+	}
+	
 	public void setColumnWidth(int column) {
+		setColumnWidth(column, sampleRows());
+	}
+
+	private void setColumnWidth(int column, int[] rows) {
 		TableColumn tc = table.getColumnModel().getColumn(column);
 		TableCellRenderer renderer = tc.getHeaderRenderer();
 		if (renderer == null)
@@ -213,7 +433,7 @@ class TableView extends JComponent implements ModelView, Resizable {
 				table, tc.getHeaderValue(), false, false, 0, 0);
 		int pref = comp.getPreferredSize().width + 20;  // offset to leave room for arrow when sorting
 		
-		for (int row = table.getRowCount() - 1; row >= 0; row--) {
+		for (int row : rows) {
 			renderer = table.getCellRenderer(row, column);
 			comp = table.prepareRenderer(renderer, row, column);
 			pref = Math.max(pref, comp.getPreferredSize().width);
@@ -222,13 +442,17 @@ class TableView extends JComponent implements ModelView, Resizable {
 	}
 
 	public void setRowHeight(int row) {
+		table.setRowHeight(measureRowHeight(row) + 2*MARGIN);
+	}
+	
+	private int measureRowHeight(int row) {
 		int pref = 0;
 		for (int column = table.getColumnCount() - 1; column >= 0; column--) {
 			TableCellRenderer renderer = table.getCellRenderer(row, column);
 			Component comp = table.prepareRenderer(renderer, row, column);
 			pref = Math.max(pref, comp.getPreferredSize().height);
 		}
-		table.setRowHeight(pref + 2*MARGIN);
+		return pref;
 	}
 
 	/**
@@ -238,42 +462,15 @@ class TableView extends JComponent implements ModelView, Resizable {
 	 *            symbol to highlight (or null if no highlighting is desired)
 	 */
 	public void setSymbolSelection(String s) {
-		if (s == null) {
+		selecting = true;   // not a user selection, so listeners are not told
+		int leaf = (s == null || model == null ? DataModel.NO_NODE : model.leafId(s));
+		if (leaf == DataModel.NO_NODE) {
 			table.getSelectionModel().clearSelection();
 		} else {
-			for (int k = 0; k < entries.size(); k++)
-				if (entries.get(k).symbol.equals(s)) {
-					int real = table.convertRowIndexToView(k);
-					table.getSelectionModel().setSelectionInterval(real, real);
-					break;
-				}
-		}
-	}
-
-	/*
-	 * method returns hash table with symbols as keys to the code
-	 */
-	public Hashtable<String, String> symbolToCodeHash() {
-		Hashtable<String, String> htable = new Hashtable<String, String>();
-		for (int i = 0; i < table.getRowCount(); i++) {
-			htable.put((String) (table.getModel().getValueAt(i, 0)),
-					(String) table.getModel().getValueAt(i, 1));
-		}
-
-		return htable;
-	}
-
-	/*
-	 * method returns has table with code as keys to symbol.
-	 */
-	public Hashtable<String, String> codeToSymbolHash() {
-		Hashtable<String, String> htable = new Hashtable<String, String>();
-		for (int i = 0; i < table.getRowCount(); i++) {
-			htable.put((String) (table.getModel().getValueAt(i, 1)),
-					(String) table.getModel().getValueAt(i, 0));
+			int real = table.convertRowIndexToView(rowOfNode[leaf]);
+			table.getSelectionModel().setSelectionInterval(real, real);
 		}
-
-		return htable;
+		selecting = false;
 	}
 
 }
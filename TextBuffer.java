@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+
+/**
+ * A growable sequence of characters for text that is edited in place.
+ * 
+ * Unlike a StringBuilder, the characters are kept in a gap buffer, so that
+ * replacing a span costs time proportional to the size of the span and to
+ * the distance from the previous edit, rather than to the length of the
+ * text that follows it.
+ */
+public class TextBuffer implements CharSequence {
+	private char[] chars = new char[16];
+	private int length;
+	private int gapStart;    // characters from gapStart on are stored gapLength places later
+	private int gapLength = 16;   // length+gapLength is always the capacity
+	
+	/**
+	 * Returns the number of characters.
+	 */
+	public int length() {
+		return length;
+	}
+	
+	/**
+	 * Returns character j.
+	 */
+	public char charAt(int j) {
+		if (j < 0 || j >= length)
+			throw new IndexOutOfBoundsException("char " + j + " of " + length);
+		return chars[j < gapStart ? j : j + gapLength];
+	}
+	
+	/**
+	 * Returns characters start through end-1 as a String.
+	 */
+	public String substring(int start, int end) {
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("chars " + start + " to " + end + " of " + length);
+		if (end <= gapStart)
+			return new String(chars, start, end - start);
+		if (start >= gapStart)
+			return new String(chars, start + gapLength, end - start);
+		StringBuilder sb = new StringBuilder(end - start);
+		sb.append(chars, start, gapStart - start);
+		sb.append(chars, gapStart + gapLength, end - gapStart);
+		return sb.toString();
+	}
+	
+	public CharSequence subSequence(int start, int end) {
+		return substring(start, end);
+	}
+	
+	@Override
+	public String toString() {
+		return substring(0, length);
+	}
+	
+	/**
+	 * Truncates to the given number of characters.
+	 */
+	public void setLength(int n) {
+		if (n < 0 || n > length)
+			throw new IndexOutOfBoundsException("length " + n + " of " + length);
+		replace(n, length, "");
+	}
+	
+	/**
+	 * Appends the given characters.
+	 */
+	public TextBuffer append(CharSequence text) {
+		return replace(length, length, text);
+	}
+	
+	/**
+	 * Replaces characters start through end-1 with the given text.
+	 */
+	public TextBuffer replace(int start, int end, CharSequence text) {
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("chars " + start + " to " + end + " of " + length);
+		moveGap(end);
+		gapLength += end - start;   // removed characters join the gap
+		gapStart = start;
+		length -= end - start;
+		int n = text.length();
+		if (gapLength < n)
+			growGap(n - gapLength);
+		for (int j=0; j < n; j++)
+			chars[gapStart + j] = text.charAt(j);
+		gapStart += n;
+		gapLength -= n;
+		length += n;
+		return this;
+	}
+	
+	/*
+	 * Moves the gap to just before character j.
+	 */
+	private void moveGap(int j) {
+		if (j < gapStart)
+			System.arraycopy(chars, j, chars, j + gapLength, gapStart - j);
+		else
+			System.arraycopy(chars, gapStart + gapLength, chars, gapStart, j - gapStart);
+		gapStart = j;
+	}
+	
+	/*
+	 * Widens the gap by at least n characters.
+	 */
+	private void growGap(int n) {
+		int extra = Math.max(n, chars.length / 2);
+		char[] grown = Arrays.copyOf(chars, chars.length + extra);
+		System.arraycopy(chars, gapStart + gapLength, grown, gapStart + gapLength + extra, length - gapStart);
+		chars = grown;
+		gapLength += extra;
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Computes the embedding of a model's tree used by TreePainter.
+ * 
+ * Leaves are spaced one unit apart horizontally using inorder traversal,
+ * and each internal node is centered above its children.  Horizontal
+ * placement does not depend on the vertical scale, so it is computed once
+ * (by a single iterative postorder pass) and y-coordinates for a given
+ * scale are derived by scaling the level of each node.
+ * 
+ * All arrays are indexed by the node ids of the DataModel.
+ */
+public class TreeLayout {
+	private static final int MAX_CACHED_SCALES = 4;
+	
+	private DataModel model;
+	private double[] x;        // x-coordinates, before shifting root to 0
+	private double shift;      // x-coordinate of root
+	private int[] level;       // number of edges from the root
+	private double[] minX;     // subtree bounds, relative to subtree root
+	private double[] maxX;
+	private LinkedHashMap<Double, double[]> yCache;
+
+	/**
+	 * Computes the layout for the given model.
+	 * @param model DataModel whose tree is to be embedded
+	 */
+	public TreeLayout(DataModel model) {
+		this.model = model;
+		int n = model.nodeCount();
+		x = new double[n];
+		level = new int[n];
+		minX = new double[n];
+		maxX = new double[n];
+		yCache = new LinkedHashMap<Double, double[]>(MAX_CACHED_SCALES, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Double, double[]> eldest) {
+				return size() > MAX_CACHED_SCALES;
+			}
+		};
+		
+		// iterative postorder; a node is finished once both children are.
+		// Levels are assigned on the way down, leaf positions in the
+		// order leaves are finished (which is inorder), and parents are
+		// centered over their children on the way back up.
+		int root = model.rootId();
+		int[] stack = new int[model.height(root) + 1];
+		int top = 0;
+		int nextLeaf = 0;
+		int previous = DataModel.NO_NODE;
+		stack[top++] = root;
+		level[root] = 0;
+		while (top > 0) {
+			int node = stack[top-1];
+			int left = model.left(node);
+			int right = model.right(node);
+			if (previous == DataModel.NO_NODE || model.parent(previous) != node) {
+				// first arrival from above
+				if (left != DataModel.NO_NODE) {
+					level[left] = level[node] + 1;
+					stack[top++] = left;
+					previous = DataModel.NO_NODE;
+					continue;
+				}
+			}
+			if (right != DataModel.NO_NODE && previous != right) {
+				level[right] = level[node] + 1;
+				stack[top++] = right;
+				previous = DataModel.NO_NODE;
+				continue;
+			}
+			
+			// both subtrees (if any) are complete
+			if (left == DataModel.NO_NODE && right == DataModel.NO_NODE) {
+				x[node] = nextLeaf++;
+				minX[node] = -0.5;
+				maxX[node] = 0.5;
+			} else {
+				int first = (left != DataModel.NO_NODE ? left : right);
+				int last = (right != DataModel.NO_NODE ? right : left);
+				x[node] = (x[first] + x[last]) / 2;
+				minX[node] = x[first] + minX[first] - x[node];
+				maxX[node] = x[last] + maxX[last] - x[node];
+			}
+			previous = node;
+			top--;
+		}
+		shift = x[root];
+	}
+
+	/**
+	 * Returns the model on which this layout is based.
+	 */
+	public DataModel getModel() {
+		return model;
+	}
+	
+	/**
+	 * Returns x-coordinate of a node, with the root at x=0.
+	 */
+	public double getX(int id) {
+		return x[id] - shift;
+	}
+	
+	/**
+	 * Returns the number of edges from the root to the given node.
+	 */
+	public int getLevel(int id) {
+		return level[id];
+	}
+	
+	/**
+	 * Returns the leftmost extent of the subtree at the given node,
+	 * relative to the x-coordinate of the node itself.
+	 */
+	public double getMinX(int id) {
+		return minX[id];
+	}
+	
+	/**
+	 * Returns the rightmost extent of the subtree at the given node,
+	 * relative to the x-coordinate of the node itself.
+	 */
+	public double getMaxX(int id) {
+		return maxX[id];
+	}
+	
+	/**
+	 * Returns the height of a bounding box for the subtree at the given
+	 * node, for the given vertical scale (leaves have height 2, leaving
+	 * room for the symbol below the node).
+	 */
+	public double getHeight(int id, double verticalScale) {
+		return 2.0 + verticalScale * model.height(id);
+	}
+	
+	/**
+	 * Returns y-coordinates of all nodes for the given vertical scale,
+	 * with the root at y=0.
+	 * 
+	 * The array is cached and shared, so it must not be modified.
+	 * @param verticalScale separation distance from level to level
+	 * @return array of y-coordinates indexed by node id
+	 */
+	public synchronized double[] getYCoordinates(double verticalScale) {
+		double[] y = yCache.get(verticalScale);
+		if (y == null) {
+			y = new double[level.length];
+			for (int id=0; id < y.length; id++)
+				y[id] = verticalScale * level[id];
+			yCache.put(verticalScale, y);
+		}
+		return y;
+	}
+}
@@ -21,12 +21,13 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
-import java.util.Map;
 
 
 /**
@@ -35,230 +36,445 @@ import java.util.Map;
  * The virtual coordinate system is such that leaves are spaced one unit
  * apart horizontally using inorder traversal.  Vertical scale from one
  * level to another can be parameterized (but is 2 by default).
+ * 
+ * Strokes, derived fonts, labels and glyph metrics are cached for the
+ * most recent scale, so repeatedly painting at the same scale (as during
+ * animation) does not allocate.  Since a painter carries this scratch state,
+ * an instance should only be used by one thread at a time.
  *
  */
 public class TreePainter {
 	static final private Color highlightColor = Color.red;
 	static final private Color freqColor = Color.yellow; // Color.white;
 	static final private double NodeDiameter = 0.9;
+	static final private double MIN_DETAIL_PIXELS = 3.0;  // narrower subtrees are drawn collapsed
+	static final private double MIN_LABEL_PIXELS = 4.0;   // smaller nodes are drawn without labels
+	static final private Point2D ORIGIN = new Point2D.Double(0,0);
 	
-	private double maxDepth;   // y-coord for lowest leaf
 	private double verticalScale;
-	private HashMap<DataModel.TreeIterator, Point2D> coords;
-	private HashMap<DataModel.TreeIterator, Rectangle2D> bounds;
-	private DataModel.TreeIterator root;
-	private double currentFontSize;
+	private DataModel model;
+	private TreeLayout layout;
+	private double[] y;     // y-coordinates for current vertical scale, shared with layout
+	private int root;
+	
+	// scratch state for culled drawing
+	private int[] stack = new int[0];
+	private int[] visible = new int[0];
+	private int numVisible;
+	private double clipMinX, clipMinY, clipMaxX, clipMaxY;
+	private int[] polyX = new int[3];
+	private int[] polyY = new int[3];
+	
+	// cached paint resources; rebuilt only when the unit or base font changes
+	private String[] symbolLabels;       // printable symbols, by node id
+	private String[] freqLabels;         // frequencies as strings, by node id
+	private double edgeUnit = Double.NaN;
+	private BasicStroke edgeStroke;
+	private double selectionUnit = Double.NaN;
+	private BasicStroke selectionStroke;
+	private Font baseFont;
+	private FontRenderContext baseFrc;
+	private double baseMaxAdvance;       // max advance of base font scaled by 100
+	private double baseDigitsExtent;     // larger dimension of root frequency digits, scaled by 100
+	private double symbolScale = Double.NaN;
+	private Font symbolFont;
+	private double[] symbolWidth;        // by node id (NaN until measured)
+	private double bit0MaxX, bit1MinX;   // metrics for path labels
+	private double freqScale = Double.NaN;
+	private Font freqFont;
+	private double freqHeight, freqMinY;
+	private double[] freqWidth;          // by node id (NaN until measured)
 
 	/**
 	 * Creates a TreePainter instance based upon the given model
 	 * 
 	 * Uses default vertical separation of 2.
- 	 * @param root TreeIterator designating the root of Huffman (sub)tree
+ 	 * @param model DataModel whose Huffman tree is to be painted
 	 */
-	public TreePainter(DataModel.TreeIterator root) {
-		this(root, 2.0);
+	public TreePainter(DataModel model) {
+		this(model, 2.0);
 	}
 	
 	/**
 	 * Creates a TreePainter instance based upon the given model
 	 * 
- 	 * @param root TreeIterator designating the root of Huffman (sub)tree
+ 	 * @param model DataModel whose Huffman tree is to be painted
 	 * @param verticalScale designates separation distance from level to level
 	 *   (with one being the horizontal separation from node to node inorder)
 	 */
-	public TreePainter(DataModel.TreeIterator root, double verticalScale) {
-		this.root = root;
-		this.verticalScale = verticalScale;
-		coords = new HashMap<DataModel.TreeIterator, Point2D>();
-		bounds = new HashMap<DataModel.TreeIterator, Rectangle2D>();
-
-		// compute coordinates
-		maxDepth = 0;
-		embed(root, 0, 0, verticalScale);
-		
-		// shift all so that root is aligned with x=0
-		double shift = coords.get(root).getX();
-		for (Map.Entry<DataModel.TreeIterator, Point2D> entry : coords.entrySet()) {
-			Point2D old = entry.getValue();
-			Point2D updated = new Point2D.Double(old.getX() - shift, old.getY());
-			coords.put(entry.getKey(), updated); 
-		}
-		
+	public TreePainter(DataModel model, double verticalScale) {
+		this(LayoutService.getTreeLayout(model), verticalScale);
 	}
-
 	
 	/**
-	 * Computes node coordinates for subtree rooted at iterator.
+	 * Creates a TreePainter instance based upon an existing layout
 	 * 
-	 * The leftmost leaf will be given x-coordinate of 'first',
-	 * while all nodes have depth based on setting with root at 'depth'.
-	 * @param root TreeIterator representing the root of the tree
-	 * @param depth depth of root
-	 * @param first x-coordinate of leftmost leaf
-	 * @return x-coordinate of rightmost leaf
+ 	 * @param layout TreeLayout of the Huffman tree to be painted
+	 * @param verticalScale designates separation distance from level to level
+	 *   (with one being the horizontal separation from node to node inorder)
 	 */
-	private int embed(DataModel.TreeIterator root, double depth, int first, double verticalScale) {
-		DataModel.TreeIterator left = root.getLeft();
-		if (left != null) {
-			int temp = embed(left, depth+verticalScale, first, verticalScale);
-			
-			DataModel.TreeIterator right = root.getRight();
-			temp = embed(right, depth+verticalScale, temp+1, verticalScale);
-			
-			double leftX = coords.get(left).getX();
-			double rightX = coords.get(right).getX();
-			Point2D here = new Point2D.Double( (leftX + rightX) / 2, depth);
-			coords.put(root, here);
-			
-			Rectangle2D leftB = bounds.get(left);
-			Rectangle2D rightB = bounds.get(right);
-			double minX =  leftX + leftB.getMinX() - here.getX();
-			double maxX =  rightX + rightB.getMaxX() - here.getX();
-			double height= verticalScale + Math.max(leftB.getHeight(), rightB.getHeight());
-			bounds.put(root, new Rectangle2D.Double(minX, -0.5, maxX-minX, height));
-			
-			return temp;
-			
-		} else {
-			coords.put(root, new Point2D.Double(first, depth));
-			bounds.put(root, new Rectangle2D.Double(-0.5, -0.5, 1.0, 2.0));
-			return first;
-		}
+	public TreePainter(TreeLayout layout, double verticalScale) {
+		this.layout = layout;
+		this.model = layout.getModel();
+		this.root = model.rootId();
+		this.verticalScale = verticalScale;
+		y = layout.getYCoordinates(verticalScale);
+		int n = model.nodeCount();
+		symbolLabels = new String[n];
+		freqLabels = new String[n];
+		symbolWidth = new double[n];
+		freqWidth = new double[n];
 	}
 	
 	/**
-	 * Returns a reasonable bounding box for the subtree rooted at given iterator,
+	 * Returns the layout being painted.
+	 */
+	public TreeLayout getLayout() {
+		return layout;
+	}
+	
+	/**
+	 * Returns a reasonable bounding box for the subtree rooted at given node,
 	 * assuming that root is centered at 0,0.
 	 * @return Rectangle2D representing bounding box
 	 */
-	public Rectangle2D getBounds(DataModel.TreeIterator root) {
-		return bounds.get(root);
+	public Rectangle2D getBounds(int root) {
+		double minX = layout.getMinX(root);
+		return new Rectangle2D.Double(minX, -0.5, layout.getMaxX(root) - minX,
+				layout.getHeight(root, verticalScale));
+	}
+	
+	/**
+	 * Returns left edge of getBounds(root), without allocating a rectangle.
+	 */
+	public double getBoundsMinX(int root) {
+		return layout.getMinX(root);
 	}
 
-    // TODO: get rid of this function and rewrite draw routines to do
-	// downward traversal from subroot, rather than iteration through
-	// full tree.
-	private boolean isDescendent(DataModel.TreeIterator node, DataModel.TreeIterator root) {
-		DataModel.TreeIterator walk = node;
-		if (walk == null) return false;
-		while (!walk.equals(root)) {
-			DataModel.TreeIterator parent = walk.getParent();
-			if (parent == null)
-				return false;
-			walk = parent;
-		}
-		return true;
+	/**
+	 * Returns right edge of getBounds(root), without allocating a rectangle.
+	 */
+	public double getBoundsMaxX(int root) {
+		return layout.getMaxX(root);
 	}
-	
+
 	/**
-	 * Draw subtree rooted at given iterator with root node at origin
+	 * Returns width of getBounds(root), without allocating a rectangle.
+	 */
+	public double getBoundsWidth(int root) {
+		return layout.getMaxX(root) - layout.getMinX(root);
+	}
+
+	/**
+	 * Returns height of getBounds(root), without allocating a rectangle.
+	 */
+	public double getBoundsHeight(int root) {
+		return layout.getHeight(root, verticalScale);
+	}
+
+	/**
+	 * Draw subtree rooted at given node with root node at origin
 	 * 
 	 * @param g2 Graphics2D context on which to draw
-	 * @param subroot DataModel.TreeIterator representing root of subtree within data model
+	 * @param subroot id of root of subtree within data model
 	 * @param unit number of pixels for one "unit" in coordinate space
 	 */
-	public void draw(Graphics2D g2, DataModel.TreeIterator subroot, double unit) {
-		draw(g2, subroot, unit, new Point2D.Double(0,0));
+	public void draw(Graphics2D g2, int subroot, double unit) {
+		draw(g2, subroot, unit, 0, 0);
 	}
 
 	
 	/**
-	 * Draw subtree rooted at given iterator with root node at given point
+	 * Draw subtree rooted at given node with root node at given point
 	 * 
 	 * @param g2 Graphics2D context on which to draw
-	 * @param subroot DataModel.TreeIterator representing root of subtree within data model
+	 * @param subroot id of root of subtree within data model
 	 * @param unit number of pixels for one "unit" in coordinate space
 	 * @param p Point2D designating where the center of the root note should be placed
 	 */
-	public void draw(final Graphics2D g2, DataModel.TreeIterator subroot, final double unit, Point2D p) {
+	public void draw(Graphics2D g2, int subroot, double unit, Point2D p) {
+		draw(g2, subroot, unit, p.getX(), p.getY());
+	}
+	
+	/**
+	 * Draw subtree rooted at given node with root node at given point
+	 * 
+	 * Only portions of the tree that intersect the clip bounds of the
+	 * graphics context are drawn.  Subtrees narrower than a few pixels
+	 * are collapsed into a single filled shape, and labels are omitted
+	 * when they would be too small to read.
+	 * 
+	 * @param g2 Graphics2D context on which to draw
+	 * @param subroot id of root of subtree within data model
+	 * @param unit number of pixels for one "unit" in coordinate space
+	 * @param px x-coordinate (in pixels) where the center of the root node should be placed
+	 * @param py y-coordinate (in pixels) where the center of the root node should be placed
+	 */
+	public void draw(Graphics2D g2, int subroot, double unit, double px, double py) {
 		// TODO: why is p expressed in actual coords, but rest in virtual?
-		Point2D subP = coords.get(subroot);
-		final Point2D offset = new Point2D.Double(p.getX()-unit*subP.getX(), p.getY()-unit*subP.getY());
+		double offsetX = px-unit*layout.getX(subroot);
+		double offsetY = py-unit*y[subroot];
+		collectVisible(g2.getClipBounds(), subroot, unit, offsetX, offsetY);
+		drawVisible(g2, unit, offsetX, offsetY);
+	}
+	
+	/**
+	 * Redraws the nodes on the path from subtree root to a node within that
+	 * subtree (along with the edges leaving them), with root rendered at given point.
+	 * 
+	 * This has the same effect as drawing the full subtree after drawSelection,
+	 * when the rest of the tree has already been drawn beneath the selection.
+	 * 
+	 * @param g2 Graphics2D context on which to draw
+	 * @param subroot id of root of subtree within data model
+	 * @param node id of the lower node
+	 * @param unit number of pixels for one "unit" in coordinate space
+	 * @param p Point2D designating where the center of the root note should be placed
+	 */
+	public void drawPath(Graphics2D g2, int subroot, int node, double unit, Point2D p) {
+		double offsetX = p.getX()-unit*layout.getX(subroot);
+		double offsetY = p.getY()-unit*y[subroot];
+		setClip(g2.getClipBounds(), unit);
+		if (visible.length < model.height(subroot) + 1)
+			visible = new int[model.height(subroot) + 1];
+		numVisible = 0;
+		for (int walk = node; walk != subroot; walk = model.parent(walk))
+			visible[numVisible++] = walk;
+		visible[numVisible++] = subroot;
+		drawVisible(g2, unit, offsetX, offsetY);
+	}
+	
+	/**
+	 * Draws the edges, nodes and labels for the nodes gathered in the visible list.
+	 */
+	private void drawVisible(Graphics2D g2, double unit, double offsetX, double offsetY) {
+		// draw line structure (and collapsed subtrees)
 		g2.setColor(Color.black);
-		g2.setStroke(new BasicStroke((float) (unit/10), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-		
-		// top-down recursion to draw line structure
-		new Object()
-		{
-			public void recurse(DataModel.TreeIterator node, boolean isFirst) {
-				if (node != null) {
-					if (!isFirst) {
-						Point2D a = coords.get(node);
-						Point2D b = coords.get(node.getParent());
-						g2.drawLine((int) (offset.getX() + unit * a.getX()),
-								(int) (offset.getY() + unit * a.getY()),
-								(int) (offset.getX() + unit * b.getX()),
-								(int) (offset.getY() + unit * b.getY()));
-					}
-					recurse(node.getLeft(), false);
-					recurse(node.getRight(), false);
-				}
+		g2.setStroke(getEdgeStroke(unit));
+		for (int k=0; k < numVisible; k++) {
+			int node = visible[k];
+			if (node < 0) {
+				node = ~node;
+				double apexX = offsetX + unit * layout.getX(node);
+				double apexY = offsetY + unit * y[node];
+				double baseY = offsetY + unit * (y[node] + verticalScale * model.height(node));
+				polyX[0] = (int) apexX;
+				polyY[0] = (int) apexY;
+				polyX[1] = (int) (apexX + unit * (layout.getMinX(node) + 0.5));
+				polyY[1] = (int) baseY;
+				polyX[2] = (int) (apexX + unit * (layout.getMaxX(node) - 0.5));
+				polyY[2] = (int) baseY;
+				g2.fillPolygon(polyX, polyY, 3);
+				g2.drawPolygon(polyX, polyY, 3);
+			} else {
+				drawEdge(g2, node, model.left(node), unit, offsetX, offsetY);
+				drawEdge(g2, node, model.right(node), unit, offsetX, offsetY);
 			}
-		}.recurse(subroot, true);
+		}
 		
 		// draw nodes and symbols
 		Font f = g2.getFont();
-		Font big = f.deriveFont(AffineTransform.getScaleInstance(100,100)); // avoid roundoff issues?
-		final double radius = unit * TreePainter.NodeDiameter * Math.min(1.0, verticalScale);
-		currentFontSize = 100.0 * radius / g2.getFontMetrics(big).getMaxAdvance();
-		g2.setFont(f.deriveFont(AffineTransform.getScaleInstance(currentFontSize, currentFontSize)));
+		prepareBaseFont(g2);
+		double radius = unit * TreePainter.NodeDiameter * Math.min(1.0, verticalScale);
+		g2.setFont(getSymbolFont(symbolFontScale(unit)));
+		boolean labels = (radius >= MIN_LABEL_PIXELS);
 
-		// top-down recursion to draw nodes and symbols
-		new Object()
-		{
-			public void recurse(DataModel.TreeIterator node) {
-				if (node != null) {
-					Point2D ctr = coords.get(node);
-					g2.fillOval((int) (offset.getX() + unit * ctr.getX() - radius/2),
-							(int) (offset.getY() + unit * ctr.getY() - radius/2),
-							(int) (radius),
-							(int) (radius));
+		for (int k=0; k < numVisible; k++) {
+			int node = visible[k];
+			if (node >= 0) {
+				g2.fillOval((int) (offsetX + unit * layout.getX(node) - radius/2),
+						(int) (offsetY + unit * y[node] - radius/2),
+						(int) (radius),
+						(int) (radius));
 
-					if (node.getSymbol() != null) {
-						String s = HuffmanDemo.printableSymbol(node.getSymbol());
-						Rectangle2D box = g2.getFontMetrics().getStringBounds(s, g2);
-						g2.drawString(s,
-								 (int) (offset.getX() + unit * ctr.getX() - box.getWidth()/2),
-								 (int) (offset.getY() + unit * (1 + ctr.getY())));
-					}
-
-					recurse(node.getLeft());
-					recurse(node.getRight());
+				if (labels && model.symbol(node) != null) {
+					String s = getSymbolLabel(node);
+					if (Double.isNaN(symbolWidth[node]))
+						symbolWidth[node] = symbolFont.getStringBounds(s, baseFrc).getWidth();
+					g2.drawString(s,
+							 (int) (offsetX + unit * layout.getX(node) - symbolWidth[node]/2),
+							 (int) (offsetY + unit * (1 + y[node])));
 				}
 			}
-		}.recurse(subroot);
+		}
 		
 		g2.setFont(f);  // restore previous font
 		
-		if (root.getFrequency() > 0) {
+		if (labels && model.weight(root) > 0) {
 			// 	draw frequency info
 			g2.setColor(TreePainter.freqColor);
-			big = f.deriveFont(AffineTransform.getScaleInstance(100,100)); // avoid roundoff issues?
-			Rectangle2D bounds = big.getStringBounds("000000000000", 0, Integer.toString(root.getFrequency()).length(), g2.getFontRenderContext());
-			double freqFontSize = 0.9 * 100 * radius / Math.max(bounds.getWidth(),bounds.getHeight());
-			g2.setFont(f.deriveFont(AffineTransform.getScaleInstance(freqFontSize, freqFontSize)));
+			g2.setFont(getFreqFont(0.9 * 100 * radius / baseDigitsExtent));
 			
-			// top-down recursion to draw frequencies
-			new Object()
-			{
-				public void recurse(DataModel.TreeIterator node) {
-					if (node != null) {
-						Point2D ctr = coords.get(node);
-						String s = Integer.toString(node.getFrequency());
-						Rectangle2D box = g2.getFontMetrics().getStringBounds(s, g2);
-						g2.drawString(s,
-								(int) (offset.getX() + unit * ctr.getX() - box.getWidth()/2),
-								(int) (offset.getY() + unit * ctr.getY() - box.getHeight()/2 - box.getMinY()));
-
-						recurse(node.getLeft());
-						recurse(node.getRight());
-					}
+			for (int k=0; k < numVisible; k++) {
+				int node = visible[k];
+				if (node >= 0) {
+					String s = getFreqLabel(node);
+					if (Double.isNaN(freqWidth[node]))
+						freqWidth[node] = freqFont.getStringBounds(s, baseFrc).getWidth();
+					g2.drawString(s,
+							(int) (offsetX + unit * layout.getX(node) - freqWidth[node]/2),
+							(int) (offsetY + unit * y[node] - freqHeight/2 - freqMinY));
 				}
-			}.recurse(subroot);
+			}
 
 			g2.setFont(f);  // restore previous font
 		}
 	}
+	
+	/**
+	 * Draws edge from node to child, if child exists and the edge meets the clip region.
+	 */
+	private void drawEdge(Graphics2D g2, int node, int child, double unit, double offsetX, double offsetY) {
+		if (child != DataModel.NO_NODE) {
+			double ax = offsetX + unit * layout.getX(child);
+			double ay = offsetY + unit * y[child];
+			double bx = offsetX + unit * layout.getX(node);
+			double by = offsetY + unit * y[node];
+			if (Math.max(ax, bx) >= clipMinX && Math.min(ax, bx) <= clipMaxX
+					&& by <= clipMaxY && ay >= clipMinY)
+				g2.drawLine((int) ax, (int) ay, (int) bx, (int) by);
+		}
+	}
+	
+	/**
+	 * Records clip region (with margin for stroke width) used for culling.
+	 */
+	private void setClip(Rectangle clip, double unit) {
+		double margin = unit / 5 + 1;
+		if (clip == null) {
+			clipMinX = clipMinY = Double.NEGATIVE_INFINITY;
+			clipMaxX = clipMaxY = Double.POSITIVE_INFINITY;
+		} else {
+			clipMinX = clip.getMinX() - margin;
+			clipMinY = clip.getMinY() - margin;
+			clipMaxX = clip.getMaxX() + margin;
+			clipMaxY = clip.getMaxY() + margin;
+		}
+	}
+	
+	/**
+	 * Gathers, in preorder, the nodes of the subtree whose bounding boxes
+	 * meet the clip region (using the subtree bounds of the layout as a
+	 * bounding volume hierarchy).  Subtrees too narrow to show any detail
+	 * are recorded as a single entry ~id and not descended.
+	 */
+	private void collectVisible(Rectangle clip, int subroot, double unit, double offsetX, double offsetY) {
+		setClip(clip, unit);
+		if (visible.length < model.nodeCount())
+			visible = new int[model.nodeCount()];
+		if (stack.length < model.height(subroot) + 2)
+			stack = new int[model.height(subroot) + 2];
+		
+		numVisible = 0;
+		int top = 0;
+		stack[top++] = subroot;
+		while (top > 0) {
+			int node = stack[--top];
+			double nodeX = offsetX + unit * layout.getX(node);
+			double boxTop = offsetY + unit * (y[node] - 0.5);
+			if (nodeX + unit * layout.getMaxX(node) < clipMinX
+					|| nodeX + unit * layout.getMinX(node) > clipMaxX
+					|| boxTop > clipMaxY
+					|| boxTop + unit * layout.getHeight(node, verticalScale) < clipMinY)
+				continue;  // entire subtree is outside of clip
+			
+			int left = model.left(node);
+			int right = model.right(node);
+			boolean isLeaf = (left == DataModel.NO_NODE && right == DataModel.NO_NODE);
+			if (!isLeaf && unit * (layout.getMaxX(node) - layout.getMinX(node)) < MIN_DETAIL_PIXELS) {
+				visible[numVisible++] = ~node;
+			} else {
+				visible[numVisible++] = node;
+				if (right != DataModel.NO_NODE) stack[top++] = right;
+				if (left != DataModel.NO_NODE) stack[top++] = left;
+			}
+		}
+	}
+	
+	private BasicStroke getEdgeStroke(double unit) {
+		if (unit != edgeUnit) {
+			edgeStroke = new BasicStroke((float) (unit/10), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+			edgeUnit = unit;
+		}
+		return edgeStroke;
+	}
+	
+	private BasicStroke getSelectionStroke(double unit) {
+		if (unit != selectionUnit) {
+			selectionStroke = new BasicStroke((float) (unit/3), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+			selectionUnit = unit;
+		}
+		return selectionStroke;
+	}
+	
+	private String getSymbolLabel(int node) {
+		if (symbolLabels[node] == null)
+			symbolLabels[node] = HuffmanDemo.printableSymbol(model.symbol(node));
+		return symbolLabels[node];
+	}
+	
+	private String getFreqLabel(int node) {
+		if (freqLabels[node] == null)
+			freqLabels[node] = Integer.toString(model.weight(node));
+		return freqLabels[node];
+	}
+	
+	/**
+	 * Adopts the current font of the graphics context as the base from
+	 * which labels are derived, discarding cached fonts and metrics if it
+	 * differs from the previous one.
+	 */
+	private void prepareBaseFont(Graphics2D g2) {
+		Font f = g2.getFont();
+		FontRenderContext frc = g2.getFontRenderContext();
+		if (f != baseFont && !f.equals(baseFont) || !frc.equals(baseFrc)) {
+			baseFont = f;
+			baseFrc = frc;
+			Font big = f.deriveFont(AffineTransform.getScaleInstance(100,100)); // avoid roundoff issues?
+			baseMaxAdvance = g2.getFontMetrics(big).getMaxAdvance();
+			Rectangle2D bounds = big.getStringBounds("000000000000", 0, Integer.toString(model.weight(root)).length(), frc);
+			baseDigitsExtent = Math.max(bounds.getWidth(), bounds.getHeight());
+			symbolScale = freqScale = Double.NaN;
+		}
+	}
+	
+	/**
+	 * Returns scale of the symbol font when drawing at given unit, so that
+	 * the widest character fits within a node (after prepareBaseFont).
+	 */
+	private double symbolFontScale(double unit) {
+		double radius = unit * TreePainter.NodeDiameter * Math.min(1.0, verticalScale);
+		return 100.0 * radius / baseMaxAdvance;
+	}
+	
+	/**
+	 * Returns the base font scaled by the given factor (cached for most recent scale).
+	 */
+	private Font getSymbolFont(double scale) {
+		if (scale != symbolScale) {
+			symbolFont = baseFont.deriveFont(AffineTransform.getScaleInstance(scale, scale));
+			symbolScale = scale;
+			Arrays.fill(symbolWidth, Double.NaN);
+			bit0MaxX = symbolFont.getStringBounds("0", baseFrc).getMaxX();
+			bit1MinX = symbolFont.getStringBounds("1", baseFrc).getMinX();
+		}
+		return symbolFont;
+	}
+	
+	/**
+	 * Returns the base font scaled by the given factor (cached for most recent scale).
+	 */
+	private Font getFreqFont(double scale) {
+		if (scale != freqScale) {
+			freqFont = baseFont.deriveFont(AffineTransform.getScaleInstance(scale, scale));
+			freqScale = scale;
+			Arrays.fill(freqWidth, Double.NaN);
+			Rectangle2D box = freqFont.getStringBounds("0", baseFrc);
+			freqHeight = box.getHeight();
+			freqMinY = box.getMinY();
+		}
+		return freqFont;
+	}
 
 	/**
 	 * Draw highlighting for path from subtree root to a node within that subtree.
@@ -268,12 +484,12 @@ public class TreePainter {
 	 * Note: drawSelection should be called BEFORE draw is called.
 	 * 
 	 * @param g2 Graphics2D context on which to draw
-	 * @param subroot DataModel.TreeIterator representing root of subtree within data model
-	 * @param node DataModel.TreeIterator representing the lower node
+	 * @param subroot id of root of subtree within data model
+	 * @param node id of the lower node
 	 * @param unit number of pixels for one "unit" in coordinate space
 	 */
-	public void drawSelection(Graphics2D g2, DataModel.TreeIterator subroot, DataModel.TreeIterator node, double unit) {
-		drawSelection(g2, subroot, node, unit, new Point2D.Double(0,0));
+	public void drawSelection(Graphics2D g2, int subroot, int node, double unit) {
+		drawSelection(g2, subroot, node, unit, ORIGIN);
 	}
 	
 	/**
@@ -283,13 +499,13 @@ public class TreePainter {
 	 * Note: drawSelection should be called BEFORE draw is called.
 	 * 
 	 * @param g2 Graphics2D context on which to draw
-	 * @param subroot DataModel.TreeIterator representing root of subtree within data model
-	 * @param node DataModel.TreeIterator representing the leaf node
+	 * @param subroot id of root of subtree within data model
+	 * @param node id of the leaf node
 	 * @param unit number of pixels for one "unit" in coordinate space
 	 * @param p Point2D designating where the center of the root note should be placed
 	 */
-	public void drawSelection(Graphics2D g2, DataModel.TreeIterator subroot, DataModel.TreeIterator node, double unit, Point2D p) {
-		drawSelection(g2, subroot, node, unit, p, highlightColor);
+	public void drawSelection(Graphics2D g2, int subroot, int node, double unit, Point2D p) {
+		drawSelection(g2, subroot, node, unit, p.getX(), p.getY(), highlightColor);
 	}
 	
 	/**
@@ -299,14 +515,14 @@ public class TreePainter {
 	 * Note: drawSelection should be called BEFORE draw is called.
 	 * 
 	 * @param g2 Graphics2D context on which to draw
-	 * @param subroot DataModel.TreeIterator representing root of subtree within data model
-	 * @param node DataModel.TreeIterator representing the leaf node
+	 * @param subroot id of root of subtree within data model
+	 * @param node id of the leaf node
 	 * @param unit number of pixels for one "unit" in coordinate space
 	 * @param color Color for the highlighted path.
 	 */
-	public void drawSelection(Graphics2D g2, DataModel.TreeIterator subroot,
-			DataModel.TreeIterator node, double unit, Color color) {
-		drawSelection(g2, subroot, node, unit, new Point2D.Double(0,0), color);
+	public void drawSelection(Graphics2D g2, int subroot,
+			int node, double unit, Color color) {
+		drawSelection(g2, subroot, node, unit, 0, 0, color);
 	}
 	
 	/**
@@ -315,39 +531,58 @@ public class TreePainter {
 	 * Note: drawSelection should be called BEFORE draw is called.
 	 * 
 	 * @param g2 Graphics2D context on which to draw
-	 * @param subroot DataModel.TreeIterator representing root of subtree within data model
-	 * @param node DataModel.TreeIterator representing the leaf node
+	 * @param subroot id of root of subtree within data model
+	 * @param node id of the leaf node
 	 * @param unit number of pixels for one "unit" in coordinate space
 	 * @param p Point2D designating where the center of the root note should be placed
 	 * @param color Color for the highlighted path.
 	 */
-	public void drawSelection(Graphics2D g2, DataModel.TreeIterator subroot,
-				DataModel.TreeIterator node, double unit, Point2D p, Color color) {
-		Point2D subP = coords.get(subroot);
-		Point2D offset = new Point2D.Double(p.getX()-unit*subP.getX(), p.getY()-unit*subP.getY());
+	public void drawSelection(Graphics2D g2, int subroot,
+				int node, double unit, Point2D p, Color color) {
+		drawSelection(g2, subroot, node, unit, p.getX(), p.getY(), color);
+	}
+	
+	/**
+	 * Draw highlighting for path from subtree root to a node with root rendered at given point.
+	 * 
+	 * Note: drawSelection should be called BEFORE draw is called.
+	 * 
+	 * @param g2 Graphics2D context on which to draw
+	 * @param subroot id of root of subtree within data model
+	 * @param node id of the leaf node
+	 * @param unit number of pixels for one "unit" in coordinate space
+	 * @param px x-coordinate (in pixels) where the center of the root node should be placed
+	 * @param py y-coordinate (in pixels) where the center of the root node should be placed
+	 * @param color Color for the highlighted path.
+	 */
+	public void drawSelection(Graphics2D g2, int subroot,
+				int node, double unit, double px, double py, Color color) {
+		double offsetX = px-unit*layout.getX(subroot);
+		double offsetY = py-unit*y[subroot];
 		// color pen
 		g2.setColor(color);
-		g2.setStroke(new BasicStroke((float) (unit/3), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-		DataModel.TreeIterator walk = node;
-		while (!walk.equals(subroot)) {
-			DataModel.TreeIterator parent = walk.getParent();
-			Point2D a = coords.get(walk);
-			Point2D b = coords.get(parent);
-			Point2D realA = new Point2D.Double(offset.getX() + unit * a.getX(), offset.getY() + unit * a.getY());
-			Point2D realB = new Point2D.Double(offset.getX() + unit * b.getX(), offset.getY() + unit * b.getY());
-			g2.drawLine((int) realA.getX(), (int) realA.getY(), (int) realB.getX(), (int) realB.getY());
+		g2.setStroke(getSelectionStroke(unit));
+		Font f = g2.getFont();
+		prepareBaseFont(g2);
+		Font bitFont = getSymbolFont(symbolFontScale(unit));
+		int walk = node;
+		while (walk != subroot) {
+			int parent = model.parent(walk);
+			double ax = offsetX + unit * layout.getX(walk);
+			double ay = offsetY + unit * y[walk];
+			double bx = offsetX + unit * layout.getX(parent);
+			double by = offsetY + unit * y[parent];
+			g2.drawLine((int) ax, (int) ay, (int) bx, (int) by);
 			
-			Font f = g2.getFont();
-			g2.setFont(f.deriveFont(AffineTransform.getScaleInstance(currentFontSize, currentFontSize)));
+			g2.setFont(bitFont);
 
-			boolean isLeft = (walk.equals(parent.getLeft()));
-			double midY = (realA.getY() + realB.getY()) / 2;
-			String bit = (isLeft ? "0" : "1");
-			Rectangle2D box = g2.getFontMetrics().getStringBounds(bit, g2);
+			boolean isLeft = (walk == model.left(parent));
+			double midY = (ay + by) / 2;
 			double cornerY = midY;  // + box.getMaxY() - box.getHeight()/2;
-			double cornerX = realA.getX() - (realA.getX() - realB.getX()) * (realA.getY() - midY) / (realA.getY() - realB.getY());
-			double highlightOffset = realA.distance(realB) * unit / (6 * (realA.getY() - realB.getY()));
-			g2.drawString(bit, (int) (cornerX - (isLeft ? box.getMaxX() + highlightOffset : box.getMinX() - highlightOffset) ),
+			double cornerX = ax - (ax - bx) * (ay - midY) / (ay - by);
+			double distance = Math.sqrt((ax - bx) * (ax - bx) + (ay - by) * (ay - by));
+			double highlightOffset = distance * unit / (6 * (ay - by));
+			g2.drawString(isLeft ? "0" : "1", (int) (cornerX - (isLeft ? bit0MaxX + highlightOffset : bit1MinX - highlightOffset) ),
 						 (int) (cornerY));
 			
 			g2.setFont(f);  // restore original font
@@ -357,18 +592,25 @@ public class TreePainter {
 	
 	
 	private void debug() {
-		for (Map.Entry<DataModel.TreeIterator, Point2D> entry : coords.entrySet()) {
-			System.out.println("Iterator " + entry.getKey().hashCode());
-			System.out.println("   freq:  " + entry.getKey().getFrequency());
-			System.out.println("   point: " + entry.getValue());
-			System.out.println("   box:   " + bounds.get(entry.getKey()));
-			DataModel.TreeIterator p = entry.getKey().getParent();
-			System.out.println("   parent " + (p == null ? -1 : p.hashCode()));
+		for (int id=0; id < y.length; id++) {
+			System.out.println("Node " + id);
+			System.out.println("   freq:  " + model.weight(id));
+			System.out.println("   point: " + layout.getX(id) + ", " + y[id]);
+			System.out.println("   box:   " + getBounds(id));
+			System.out.println("   parent " + model.parent(id));
 		}
 	}
 	
+	/**
+	 * Changes the vertical separation from level to level.
+	 * 
+	 * Horizontal placement is unaffected, so this only selects the
+	 * (cached) y-coordinates for the new scale.
+	 * @param aspect new vertical scale
+	 */
 	public void reFit(double aspect) {
-		embed(root, 0, 0, aspect);
+		verticalScale = aspect;
+		y = layout.getYCoordinates(aspect);
 	}
 	
 	/**
@@ -380,7 +622,7 @@ public class TreePainter {
 		m.put("a", 25);
 		m.put("b", 76);
 		m.put("e", 135);
-		new TreePainter(DataModel.createFromFrequencies(m).getRoot(), 1);
+		new TreePainter(DataModel.createFromFrequencies(m), 1);
 	}
 
 }
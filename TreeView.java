@@ -18,20 +18,61 @@
  */
 
 import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
 import java.awt.*;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Creates a view of a data model as a tree.
  * 
+ * The tree itself is rendered into image tiles by a background thread pool,
+ * and repaints simply composite those tiles with the highlighted path drawn
+ * on top.  Tiles are discarded whenever the model or the geometry changes,
+ * except that after a window resize the tiles for the new geometry are
+ * rendered in advance (see prepareFit) and replace the old ones at once.
  */
 public class TreeView extends JComponent implements ModelView, Resizable{
+	private static final int TILE_SIZE = 256;
+	private static final ExecutorService tileRenderer = Executors.newFixedThreadPool(
+			Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "TreeView tile renderer");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+	// painters keep scratch state and label caches, so each renderer thread
+	// keeps one of its own, reused for as long as the layout is unchanged
+	private static final ThreadLocal<TreePainter> tilePainter = new ThreadLocal<TreePainter>();
+	
+	private TreeLayout layout;
+	private double aspect;
 	private TreePainter painter;
+	
+	// tile cache; only accessed on the event dispatch thread
+	private volatile int generation;     // incremented to invalidate tiles
+	private HashMap<Long, BufferedImage> tiles = new HashMap<Long, BufferedImage>();
+	private HashSet<Long> pendingTiles = new HashSet<Long>();
+	private int tileWidth, tileHeight;   // component size for which tiles are valid
+	private Fit prepared;                // tiles rendered in advance for the next reFit
+	
 	private String highlighted;
-	private DataModel.TreeIterator pathHighlighted;
+	private int pathHighlighted = DataModel.NO_NODE;
 	private int buffer;
-	private DataModel model;
+	private volatile DataModel model;   // also read by prepareFit's background job
 	private Color highlightColor;
 	private static Color primaryColor = Color.RED;
 	
@@ -41,9 +82,11 @@ public class TreeView extends JComponent implements ModelView, Resizable{
 	public void setModel(DataModel m) {
 		model = m;
 		setSymbolSelection(null);
-		double aspect = (1.0 * m.size() * getHeight()) / (m.getRoot().getDepth() * getWidth());
-		painter = new TreePainter(m.getRoot(), aspect);
+		aspect = (1.0 * m.size() * getHeight()) / (m.getRoot().getDepth() * getWidth());
+		layout = LayoutService.getTreeLayout(m);
+		painter = new TreePainter(layout, aspect);
 		highlightColor = Color.red;
+		invalidateTiles();
 		repaint();
 	}
 
@@ -51,17 +94,202 @@ public class TreeView extends JComponent implements ModelView, Resizable{
 	public void paintComponent(Graphics g) {
 		if (painter != null) {
 			Graphics2D g2 = (Graphics2D) g;
-			DataModel.TreeIterator root = model.getRoot();
+			int root = model.rootId();
 			Rectangle2D box = painter.getBounds(root);
-			double factor = Math.min(getWidth() / box.getWidth(), getHeight() / box.getHeight());
-			Point2D fix = new Point2D.Double(-box.getMinX() * factor + (getWidth() - factor*box.getWidth())/2, -box.getMinY() * factor);
-			if (highlighted != null) {
-				painter.drawSelection(g2, root, model.getLeaf(highlighted), factor, fix, highlightColor);
+			double factor = scaleToFit(box, getWidth(), getHeight());
+			Point2D fix = placeToFit(box, factor, getWidth());
+			
+			drawTiles(g2, factor, fix);
+			
+			int node = DataModel.NO_NODE;
+			if (highlighted != null)
+				node = model.leafId(highlighted);
+			else if (pathHighlighted != DataModel.NO_NODE)
+				node = pathHighlighted;
+			if (node != DataModel.NO_NODE) {
+				painter.drawSelection(g2, root, node, factor, fix, highlightColor);
+				painter.drawPath(g2, root, node, factor, fix);
 			}
-			if (pathHighlighted != null) {
-				painter.drawSelection(g2, root, pathHighlighted, factor, fix, highlightColor);
+		}
+	}
+	
+	/**
+	 * Returns the number of pixels per unit at which a tree with given
+	 * bounds fills a view of given size.
+	 */
+	private static double scaleToFit(Rectangle2D box, int width, int height) {
+		return Math.min(width / box.getWidth(), height / box.getHeight());
+	}
+	
+	/**
+	 * Returns where the root goes so that the tree with given bounds is
+	 * centered horizontally at top of a view of given width.
+	 */
+	private static Point2D placeToFit(Rectangle2D box, double factor, int width) {
+		return new Point2D.Double(-box.getMinX() * factor + (width - factor*box.getWidth())/2, -box.getMinY() * factor);
+	}
+	
+	/**
+	 * Draws all available tiles meeting the clip region, and schedules
+	 * background rendering of those that are missing.
+	 */
+	private void drawTiles(Graphics2D g2, double factor, Point2D fix) {
+		if (getWidth() != tileWidth || getHeight() != tileHeight)
+			invalidateTiles();
+		Rectangle clip = g2.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		int firstCol = Math.max(0, clip.x / TILE_SIZE);
+		int firstRow = Math.max(0, clip.y / TILE_SIZE);
+		int lastCol = Math.min(getWidth() - 1, clip.x + clip.width - 1) / TILE_SIZE;
+		int lastRow = Math.min(getHeight() - 1, clip.y + clip.height - 1) / TILE_SIZE;
+		for (int row = firstRow; row <= lastRow; row++)
+			for (int col = firstCol; col <= lastCol; col++) {
+				Long key = ((long) row << 32) | col;
+				BufferedImage tile = tiles.get(key);
+				if (tile != null)
+					g2.drawImage(tile, col * TILE_SIZE, row * TILE_SIZE, null);
+				else if (!pendingTiles.contains(key)) {
+					pendingTiles.add(key);
+					tileRenderer.execute(new TileJob(key, row, col, factor, fix, g2.getFont()));
+				}
 			}
-			painter.draw(g2, root, factor, fix);
+	}
+	
+	/**
+	 * Discards all rendered tiles (and any rendering in progress).
+	 */
+	private void invalidateTiles() {
+		generation++;
+		tiles.clear();
+		pendingTiles.clear();
+		tileWidth = getWidth();
+		tileHeight = getHeight();
+	}
+	
+	/**
+	 * Renders one tile of the static tree on a background thread, and then
+	 * installs it on the event dispatch thread (if still current).
+	 */
+	private class TileJob implements Runnable {
+		private final Long key;
+		private final int row, col;
+		private final int jobGeneration;
+		private final TreeLayout jobLayout;
+		private final double jobAspect;
+		private final int root;
+		private final double factor;
+		private final Point2D fix;
+		private final Font font;
+		
+		TileJob(Long key, int row, int col, double factor, Point2D fix, Font font) {
+			this.key = key;
+			this.row = row;
+			this.col = col;
+			this.factor = factor;
+			this.fix = fix;
+			this.font = font;
+			jobGeneration = generation;
+			jobLayout = layout;
+			jobAspect = aspect;
+			root = model.rootId();
+		}
+		
+		public void run() {
+			if (jobGeneration != generation)
+				return;  // stale before we even started
+			final BufferedImage tile = renderTile(jobLayout, jobAspect, root, row, col, factor, fix, font);
+			
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					if (jobGeneration == generation) {
+						tiles.put(key, tile);
+						pendingTiles.remove(key);
+						repaint(col * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Returns the painter of the calling thread, set to the given layout and aspect.
+	 */
+	private static TreePainter localPainter(TreeLayout layout, double aspect) {
+		TreePainter painter = tilePainter.get();
+		if (painter == null || painter.getLayout() != layout) {
+			painter = new TreePainter(layout, aspect);
+			tilePainter.set(painter);
+		} else
+			painter.reFit(aspect);
+		return painter;
+	}
+	
+	/**
+	 * Renders one tile of the tree, using the painter of the calling thread.
+	 */
+	private static BufferedImage renderTile(TreeLayout layout, double aspect, int root,
+			int row, int col, double factor, Point2D fix, Font font) {
+		TreePainter painter = localPainter(layout, aspect);
+		BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = tile.createGraphics();
+		g2.translate(-col * TILE_SIZE, -row * TILE_SIZE);
+		g2.setClip(col * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+		if (font != null)
+			g2.setFont(font);
+		painter.draw(g2, root, factor, fix);
+		g2.dispose();
+		return tile;
+	}
+	
+	/**
+	 * Renders all tiles of the tree for a given view size, and the aspect
+	 * that size calls for, in advance of reFit.
+	 */
+	private class Fit implements Runnable {
+		private final DataModel fitModel;
+		private final TreeLayout fitLayout;
+		private final int width, height;
+		private final double fitAspect;
+		private final Font font;
+		private volatile HashMap<Long, BufferedImage> fitTiles;   // null unless complete
+		
+		Fit(DataModel m, TreeLayout layout, int width, int height, Font font) {
+			fitModel = m;
+			fitLayout = layout;
+			this.width = width;
+			this.height = height;
+			this.font = font;
+			fitAspect = (1.0 * m.size() * height) / (m.getRoot().getDepth() * width);
+		}
+		
+		public void run() {
+			if (fitModel != model)
+				return;   // replaced meanwhile, so reFit will not use these tiles
+			final int root = fitModel.rootId();
+			Rectangle2D box = localPainter(fitLayout, fitAspect).getBounds(root);
+			final double factor = scaleToFit(box, width, height);
+			final Point2D fix = placeToFit(box, factor, width);
+			int rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+			int cols = (width + TILE_SIZE - 1) / TILE_SIZE;
+			List<Callable<BufferedImage>> jobs = new ArrayList<Callable<BufferedImage>>();
+			for (int row = 0; row < rows; row++)
+				for (int col = 0; col < cols; col++) {
+					final int r = row, c = col;
+					jobs.add(new Callable<BufferedImage>() {
+						public BufferedImage call() {
+							return renderTile(fitLayout, fitAspect, root, r, c, factor, fix, font);
+						}
+					});
+				}
+			try {
+				HashMap<Long, BufferedImage> result = new HashMap<Long, BufferedImage>();
+				List<Future<BufferedImage>> done = tileRenderer.invokeAll(jobs);
+				for (int k=0; k < done.size(); k++)
+					result.put(((long) (k / cols) << 32) | (k % cols), done.get(k).get());
+				fitTiles = result;
+			} catch (InterruptedException e) {
+			} catch (ExecutionException e) { }
 		}
 	}
 	
@@ -75,7 +303,7 @@ public class TreeView extends JComponent implements ModelView, Resizable{
 	}
 
 	public void setSymbolSelection(String s, Color color) {
-		pathHighlighted = null;
+		pathHighlighted = DataModel.NO_NODE;
 		highlighted = s;
 		highlightColor = color;
 		repaint();
@@ -85,26 +313,53 @@ public class TreeView extends JComponent implements ModelView, Resizable{
 		setPathHighlight(path, primaryColor);
 	}
 	
+	/**
+	 * Highlights the path from the root for the given bits; bits beyond a
+	 * leaf (such as the literal after an escape codeword) are ignored.
+	 */
 	public void setPathHighlight(String path, Color color) {
 		highlightColor = color;
 		highlighted = null;
-		if (model != null)
-			pathHighlighted = model.getRoot();
-		for (int i = 0; i < path.length(); i++) {
-			char child = path.charAt(i);
-			if (child == '0')
-				pathHighlighted = pathHighlighted.getLeft();
-			else
-				pathHighlighted = pathHighlighted.getRight();
+		if (model != null) {
+			pathHighlighted = model.rootId();
+			for (int i = 0; i < path.length(); i++) {
+				int child = (path.charAt(i) == '0' ? model.left(pathHighlighted) : model.right(pathHighlighted));
+				if (child == DataModel.NO_NODE)
+					break;   // reached a leaf
+				pathHighlighted = child;
+			}
 		}
 		repaint();
 	}
 
+	/**
+	 * Returns a job rendering every tile for the current size, at the aspect
+	 * reFit will adopt for it, so that reFit can install those tiles rather
+	 * than discard the old ones and leave the view to be rendered anew.
+	 * 
+	 * The job works on the model, layout and size as of this call.  Should
+	 * the model be replaced, or the size change, before reFit, its tiles
+	 * are not used.
+	 */
+	public Runnable prepareFit() {
+		prepared = null;
+		if (model == null || getWidth() == 0 || getHeight() == 0 || model.getRoot().getDepth() == 0)
+			return null;
+		prepared = new Fit(model, layout, getWidth(), getHeight(), getFont());
+		return prepared;
+	}
+
 	public void reFit() {
 		//same formula from constructor
-		if (getWidth() != 0 && model.getRoot().getDepth() != 0){
-			double aspect = (1.0 * model.size() * getHeight()) / (model.getRoot().getDepth() * getWidth());
+		if (model != null && getWidth() != 0 && model.getRoot().getDepth() != 0){
+			aspect = (1.0 * model.size() * getHeight()) / (model.getRoot().getDepth() * getWidth());
 			painter.reFit(aspect);
+			invalidateTiles();
+			Fit fit = prepared;
+			prepared = null;
+			if (fit != null && fit.fitTiles != null && fit.fitModel == model
+					&& fit.width == getWidth() && fit.height == getHeight())
+				tiles.putAll(fit.fitTiles);
 			repaint();
 		}
 	}
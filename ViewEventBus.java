@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+
+import javax.swing.Timer;
+
+/**
+ * Passes changes of the model, symbol selection and path highlighting on
+ * to the views, at most once per frame.
+ * 
+ * Changes are only recorded when they are published; a single update with
+ * the latest state is delivered when the frame's timer fires, so a burst of
+ * changes (fast playback, or scrolling through the table with the keyboard)
+ * costs each view one update and one repaint.  A new model takes effect
+ * before any highlighting, and discards highlighting still pending for the
+ * previous model.  All methods are to be called on the event dispatch thread.
+ */
+public class ViewEventBus implements ActionListener {
+	static final int FRAME_MILLIS = 16;
+	
+	private ArrayList<ModelView> modelViews = new ArrayList<ModelView>();
+	private ArrayList<HighlightListener> listeners = new ArrayList<HighlightListener>();
+	private Timer timer;
+	
+	// pending changes, since the last update was delivered
+	private boolean modelChanged;
+	private DataModel model;
+	private boolean selectionChanged;
+	private String symbol;
+	private Color symbolColor;
+	private boolean pathChanged;
+	private String path;
+	private Color pathColor;
+	private boolean pathLatest;
+	
+	public ViewEventBus() {
+		timer = new Timer(FRAME_MILLIS, this);
+		timer.setRepeats(false);
+	}
+	
+	public void addModelView(ModelView view) {
+		modelViews.add(view);
+	}
+	
+	public void addHighlightListener(HighlightListener listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Publishes a new model for all views.
+	 */
+	public void setModel(DataModel m) {
+		model = m;
+		modelChanged = true;
+		selectionChanged = false;
+		pathChanged = false;
+		schedule();
+	}
+	
+	/**
+	 * Publishes a new symbol selection.
+	 * @param s symbol to select (or null for no selection)
+	 * @param color color for highlighting it (or null for the default)
+	 */
+	public void selectSymbol(String s, Color color) {
+		symbol = s;
+		symbolColor = color;
+		selectionChanged = true;
+		pathLatest = false;
+		schedule();
+	}
+	
+	/**
+	 * Publishes a new path highlight.
+	 * @param code path from the root, as a string of 0's and 1's
+	 * @param color color for highlighting it (or null for the default)
+	 */
+	public void highlightPath(String code, Color color) {
+		path = code;
+		pathColor = color;
+		pathChanged = true;
+		pathLatest = true;
+		schedule();
+	}
+	
+	private void schedule() {
+		if (!timer.isRunning())
+			timer.start();
+	}
+	
+	/**
+	 * Delivers the pending changes (when the frame's timer fires).
+	 */
+	public void actionPerformed(ActionEvent e) {
+		boolean newModel = modelChanged;
+		modelChanged = false;
+		if (newModel)
+			for (ModelView mv : modelViews)
+				mv.setModel(model);
+		
+		if (selectionChanged || pathChanged) {
+			HighlightEvent event = new HighlightEvent(this, selectionChanged, symbol, symbolColor,
+					pathChanged, path, pathColor, pathLatest);
+			selectionChanged = false;
+			pathChanged = false;
+			for (HighlightListener l : listeners)
+				l.highlightChanged(event);
+		}
+	}
+}
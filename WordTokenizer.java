@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013, Michael H. Goldwasser and Nicholas Brown.
+ *
+ * This file is part of the Huffman Coding Demonstration.
+ *
+ * The Huffman Coding Demonstration is free software: you can
+ * redistribute it and/or modify it under the terms of the GNU General
+ * Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A tokenizer whose symbols are words: each maximal run of letters and
+ * digits is one symbol, and every other character is a symbol of its own.
+ */
+public class WordTokenizer implements Tokenizer {
+
+	public List<String> tokenize(String text) {
+		ArrayList<String> tokens = new ArrayList<String>();
+		int start = 0;
+		while (start < text.length()) {
+			int end = start + 1;
+			if (Character.isLetterOrDigit(text.charAt(start)))
+				while (end < text.length() && Character.isLetterOrDigit(text.charAt(end)))
+					end++;
+			tokens.add(text.substring(start, end));
+			start = end;
+		}
+		return tokens;
+	}
+}